@@ -0,0 +1,26 @@
+package de.herschke.neo4j.uplink.api;
+
+/**
+ * is told about the progress of a bulk write. The listener is called by the
+ * thread, that started the bulk write, one chunk after the other.
+ *
+ * @author rhk
+ */
+public interface BulkWriteListener {
+
+    /**
+     * a chunk was written.
+     *
+     * @param firstRow the index of the first row of the chunk in the input
+     * @param rowCount the count of rows of the chunk
+     * @param writtenRows the count of rows, that were written so far
+     */
+    void chunkWritten(long firstRow, int rowCount, long writtenRows);
+
+    /**
+     * a chunk failed, the bulk write goes on with the next chunks.
+     *
+     * @param failure the failed chunk
+     */
+    void chunkFailed(BulkWriteResult.Failure failure);
+}
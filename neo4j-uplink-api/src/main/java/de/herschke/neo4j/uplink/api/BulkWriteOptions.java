@@ -0,0 +1,118 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * options of a bulk write, see
+ * {@link Neo4jUplink#executeCypherBulkWrite(String, java.util.Iterator, BulkWriteOptions)}.
+ *
+ * @author rhk
+ */
+public class BulkWriteOptions {
+
+    private String rowsParameter = "rows";
+    private Map<String, Object> params = Collections.emptyMap();
+    private int initialChunkSize = 1000;
+    private int minChunkSize = 10;
+    private int maxChunkSize = 10000;
+    private int parallelism = 4;
+    private long targetChunkLatency = 500;
+    private BulkWriteListener listener = null;
+
+    /**
+     * @return the name of the parameter, that holds the rows of a chunk, e.g.
+     * 'rows' for 'UNWIND {rows} AS row'
+     */
+    public String getRowsParameter() {
+        return rowsParameter;
+    }
+
+    public void setRowsParameter(String rowsParameter) {
+        if (rowsParameter == null || rowsParameter.isEmpty()) {
+            throw new IllegalArgumentException("rowsParameter must not be empty");
+        }
+        this.rowsParameter = rowsParameter;
+    }
+
+    /**
+     * @return the other parameters of the query, that are sent with each
+     * chunk
+     */
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+    public void setParams(Map<String, Object> params) {
+        this.params = params == null ? Collections.<String, Object>emptyMap() : params;
+    }
+
+    /**
+     * @return the count of rows of the first chunks
+     */
+    public int getInitialChunkSize() {
+        return initialChunkSize;
+    }
+
+    public void setInitialChunkSize(int initialChunkSize) {
+        this.initialChunkSize = initialChunkSize;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * the chunk size adapts to the latency between these bounds.
+     */
+    public void setChunkSizeBounds(int minChunkSize, int maxChunkSize) {
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException(String.format("invalid chunk size bounds: %d - %d", minChunkSize, maxChunkSize));
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * @return the maximum count of chunks, that are sent at the same time
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the milliseconds, a chunk should take. Faster chunks let the
+     * chunk size grow, slower ones let it shrink.
+     */
+    public long getTargetChunkLatency() {
+        return targetChunkLatency;
+    }
+
+    public void setTargetChunkLatency(long targetChunkLatency) {
+        this.targetChunkLatency = targetChunkLatency;
+    }
+
+    public BulkWriteListener getListener() {
+        return listener;
+    }
+
+    public void setListener(BulkWriteListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String toString() {
+        return "rowsParameter: " + rowsParameter + ", initialChunkSize: " + initialChunkSize + ", chunkSize: " + minChunkSize + "-" + maxChunkSize + ", parallelism: " + parallelism + ", targetChunkLatency: " + targetChunkLatency;
+    }
+}
@@ -0,0 +1,100 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the outcome of a bulk write: the count of written rows and the chunks,
+ * that failed.
+ *
+ * @author rhk
+ */
+public class BulkWriteResult {
+
+    /**
+     * a chunk, that failed. Its rows were not written, as each chunk is
+     * written in its own transaction, so they may be written again.
+     */
+    public static class Failure {
+
+        private final long firstRow;
+        private final List<?> rows;
+        private final CypherException exception;
+
+        public Failure(long firstRow, List<?> rows, CypherException exception) {
+            this.firstRow = firstRow;
+            this.rows = rows;
+            this.exception = exception;
+        }
+
+        /**
+         * @return the index of the first row of the chunk in the input
+         */
+        public long getFirstRow() {
+            return firstRow;
+        }
+
+        public List<?> getRows() {
+            return rows;
+        }
+
+        public CypherException getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows %d-%d: %s", firstRow, firstRow + rows.size() - 1, exception.getMessage());
+        }
+    }
+    private final long writtenRows;
+    private final int chunkCount;
+    private final List<Failure> failures;
+    private final long elapsedMillis;
+
+    public BulkWriteResult(long writtenRows, int chunkCount, List<Failure> failures, long elapsedMillis) {
+        this.writtenRows = writtenRows;
+        this.chunkCount = chunkCount;
+        this.failures = Collections.unmodifiableList(failures);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+
+    /**
+     * @return the count of chunks, that were sent, including the failed ones
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return the failed chunks, in the order they failed
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public long getFailedRows() {
+        long failedRows = 0;
+        for (Failure failure : failures) {
+            failedRows += failure.getRows().size();
+        }
+        return failedRows;
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows written in %d chunks and %d ms, %d chunks failed", writtenRows, chunkCount, elapsedMillis, failures.size());
+    }
+}
@@ -0,0 +1,29 @@
+package de.herschke.neo4j.uplink.api;
+
+/**
+ * an exception that occurs, when a statement of a batch fails. Neo4j executes
+ * a batch in one transaction, so none of the statements were applied.
+ *
+ * @author rhk
+ */
+public class CypherBatchException extends CypherException {
+
+    private final int statementIndex;
+
+    public CypherBatchException(int statementIndex, String message) {
+        super(message);
+        this.statementIndex = statementIndex;
+    }
+
+    public CypherBatchException(int statementIndex, String message, Throwable cause) {
+        super(message, cause);
+        this.statementIndex = statementIndex;
+    }
+
+    /**
+     * @return the index of the failed statement in the batch
+     */
+    public int getStatementIndex() {
+        return statementIndex;
+    }
+}
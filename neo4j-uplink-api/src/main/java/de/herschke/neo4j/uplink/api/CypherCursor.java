@@ -0,0 +1,66 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a forward-only cursor over the rows of a cypher query result. The rows are
+ * read lazily from the underlying connection, so only the current row is held
+ * in memory. The cursor must be closed to release the connection, unless all
+ * rows have been read.
+ *
+ * @author rhk
+ */
+public interface CypherCursor extends Closeable {
+
+    /**
+     * @return the names of all columns as a list
+     */
+    List<String> getColumnNames();
+
+    /**
+     * moves the cursor to the next row.
+     *
+     * @return true, if there is a current row, false if the end of the result
+     * was reached. If the end was reached, the cursor is closed.
+     * @throws CypherException if the response cannot be read
+     */
+    boolean next() throws CypherException;
+
+    /**
+     * @return the index of the current row, or -1 if {@link #next()} was not
+     * called yet
+     */
+    int getRowIndex();
+
+    /**
+     * @param columnIndex a column index
+     * @return the cell value of the current row
+     */
+    Object getValue(int columnIndex);
+
+    /**
+     * @param columnName a column name
+     * @return the cell value of the current row
+     */
+    Object getValue(String columnName);
+
+    /**
+     * @return the data of the current row as Map. The key of the Map is the
+     * columnName.
+     */
+    Map<String, Object> getRowData();
+
+    /**
+     * @return the data of the current row
+     */
+    List<Object> getRowValues();
+
+    /**
+     * closes the cursor and releases the underlying connection. Calling close
+     * on a closed cursor has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,221 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * options for the execution of a single cypher query.
+ *
+ * @author rhk
+ */
+public class CypherQueryOptions implements Serializable {
+
+    /**
+     * whether the result of a query is taken from and put into the result
+     * cache.
+     */
+    public static enum Caching {
+
+        /**
+         * the result is cached, if the cache is enabled by default and the
+         * query does not modify the graph.
+         */
+        DEFAULT,
+        /**
+         * the result is cached.
+         */
+        ENABLED,
+        /**
+         * the result is neither taken from nor put into the cache.
+         */
+        DISABLED
+    }
+
+    /**
+     * whether a query is sent to the master or to a read replica, if read
+     * replicas are configured.
+     */
+    public static enum Routing {
+
+        /**
+         * the query is sent to a read replica, if it does not modify the
+         * graph.
+         */
+        DEFAULT,
+        /**
+         * the query is sent to the master, e.g. to read the own writes, that
+         * may not have reached the replicas yet.
+         */
+        MASTER,
+        /**
+         * the query is sent to a read replica. The query must not modify the
+         * graph.
+         */
+        REPLICA
+    }
+    private Caching caching = Caching.DEFAULT;
+    private Routing routing = Routing.DEFAULT;
+    private long cacheTimeToLive = -1;
+    private Set<String> columns = null;
+    private int maxRows = 0;
+    private boolean hedged = false;
+
+    /**
+     * @return options, that cache the result of the query
+     */
+    public static CypherQueryOptions cached() {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setCaching(Caching.ENABLED);
+        return options;
+    }
+
+    /**
+     * @return options, that bypass the result cache
+     */
+    public static CypherQueryOptions uncached() {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setCaching(Caching.DISABLED);
+        return options;
+    }
+
+    /**
+     * @return options, that materialize only the given columns of the result
+     */
+    public static CypherQueryOptions columns(String... columns) {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setColumns(Arrays.asList(columns));
+        return options;
+    }
+
+    /**
+     * @return options, that read at most the given count of rows
+     */
+    public static CypherQueryOptions maxRows(int maxRows) {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setMaxRows(maxRows);
+        return options;
+    }
+
+    /**
+     * @return options, that send the query to the master
+     */
+    public static CypherQueryOptions onMaster() {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setRouting(Routing.MASTER);
+        return options;
+    }
+
+    /**
+     * @return options, that send the query to a read replica
+     */
+    public static CypherQueryOptions onReplica() {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setRouting(Routing.REPLICA);
+        return options;
+    }
+
+    /**
+     * @return options, that hedge the query against a slow response
+     */
+    public static CypherQueryOptions hedged() {
+        CypherQueryOptions options = new CypherQueryOptions();
+        options.setHedged(true);
+        return options;
+    }
+
+    public Caching getCaching() {
+        return caching;
+    }
+
+    public void setCaching(Caching caching) {
+        this.caching = caching == null ? Caching.DEFAULT : caching;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing == null ? Routing.DEFAULT : routing;
+    }
+
+    /**
+     * @return the milliseconds, a cached result is valid, or -1 to use the
+     * configured time to live of the cache
+     */
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    public void setCacheTimeToLive(long cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    /**
+     * @return the columns, that are materialized in the result, or null, if
+     * all columns are materialized
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * restricts the result to the given columns. The cells of the other
+     * columns are skipped while the response is parsed, so they are neither
+     * decoded nor kept in memory. Columns, that are not returned by the query,
+     * are ignored.
+     *
+     * @param columns the names of the columns, or null for all columns
+     */
+    public void setColumns(Collection<String> columns) {
+        this.columns = columns == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(columns));
+    }
+
+    /**
+     * @return the maximum count of rows of the result, or 0, if all rows are
+     * read
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * limits the count of rows of the result. If the query returns more rows,
+     * the rest of the response is not read, the connection is aborted and
+     * the result reports, that it is truncated.
+     *
+     * @param maxRows the maximum count of rows, or 0 for all rows
+     */
+    public void setMaxRows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("maxRows must not be negative: " + maxRows);
+        }
+        this.maxRows = maxRows;
+    }
+
+    public boolean isHedged() {
+        return hedged;
+    }
+
+    /**
+     * hedges the query against a slow response: if the server did not answer
+     * within the usual latency of queries, the query is sent a second time,
+     * the first result is taken and the other request is cancelled. Only
+     * queries, that do not modify the graph, are hedged, and only as far as
+     * the hedging budget of the uplink allows.
+     *
+     * @param hedged true to hedge the query
+     */
+    public void setHedged(boolean hedged) {
+        this.hedged = hedged;
+    }
+
+    @Override
+    public String toString() {
+        return "caching: " + caching + ", cacheTimeToLive: " + cacheTimeToLive + ", columns: " + columns + ", maxRows: " + maxRows + ", routing: " + routing + ", hedged: " + hedged;
+    }
+}
@@ -0,0 +1,45 @@
+package de.herschke.neo4j.uplink.api;
+
+/**
+ * an exception that occurs, when a query is rejected before it is sent to the
+ * server, because too many requests are in flight or the server failed
+ * repeatedly. The query was not executed, so it may be retried later.
+ *
+ * @author rhk
+ */
+public class CypherRejectedException extends CypherException {
+
+    /**
+     * the reason, why a query was rejected.
+     */
+    public static enum Reason {
+
+        /**
+         * the limit of requests in flight was reached and no slot got free in
+         * time, or the queue of waiting requests was full.
+         */
+        LIMIT_REACHED,
+        /**
+         * the circuit breaker is open, because the server failed repeatedly.
+         */
+        CIRCUIT_OPEN
+    }
+    private final Reason reason;
+
+    public CypherRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public CypherRejectedException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    /**
+     * @return the reason, why the query was rejected
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
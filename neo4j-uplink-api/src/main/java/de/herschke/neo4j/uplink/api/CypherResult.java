@@ -39,6 +39,74 @@ public interface CypherResult extends Iterable<Map<String, Object>>, Serializabl
      */
     List<Object> getColumnValues(String columnName);
 
+    /**
+     * returns the values of a column of numbers without boxing them. The
+     * numbers are converted like {@link Number#longValue()}.
+     *
+     * @param columnIndex a column index
+     * @param nullValue the value for the rows, that have no value
+     * @return the values in all rows for a specific column
+     * @throws ClassCastException if the column has a value, that is not a
+     * number
+     */
+    long[] getLongColumn(int columnIndex, long nullValue);
+
+    /**
+     * @param columnName a column name
+     * @param nullValue the value for the rows, that have no value
+     * @return the values in all rows for a specific column, or nullValue in all
+     * rows, if there is no such column
+     * @throws ClassCastException if the column has a value, that is not a
+     * number
+     * @see #getLongColumn(int, long)
+     */
+    long[] getLongColumn(String columnName, long nullValue);
+
+    /**
+     * returns the values of a column of numbers without boxing them. The
+     * numbers are converted like {@link Number#doubleValue()}.
+     *
+     * @param columnIndex a column index
+     * @param nullValue the value for the rows, that have no value, e.g.
+     * {@link Double#NaN}
+     * @return the values in all rows for a specific column
+     * @throws ClassCastException if the column has a value, that is not a
+     * number
+     */
+    double[] getDoubleColumn(int columnIndex, double nullValue);
+
+    /**
+     * @param columnName a column name
+     * @param nullValue the value for the rows, that have no value
+     * @return the values in all rows for a specific column, or nullValue in all
+     * rows, if there is no such column
+     * @throws ClassCastException if the column has a value, that is not a
+     * number
+     * @see #getDoubleColumn(int, double)
+     */
+    double[] getDoubleColumn(String columnName, double nullValue);
+
+    /**
+     * returns the values of a column of booleans without boxing them.
+     *
+     * @param columnIndex a column index
+     * @param nullValue the value for the rows, that have no value
+     * @return the values in all rows for a specific column
+     * @throws ClassCastException if the column has a value, that is not a
+     * boolean
+     */
+    boolean[] getBooleanColumn(int columnIndex, boolean nullValue);
+
+    /**
+     * @param columnName a column name
+     * @param nullValue the value for the rows, that have no value
+     * @return the values in all rows for a specific column, or nullValue in all
+     * rows, if there is no such column
+     * @throws ClassCastException if the column has a value, that is not a
+     * boolean
+     */
+    boolean[] getBooleanColumn(String columnName, boolean nullValue);
+
     /**
      * @return the count of rows in the result
      */
@@ -80,4 +148,10 @@ public interface CypherResult extends Iterable<Map<String, Object>>, Serializabl
      * @return wether or not this result has data
      */
     boolean isEmpty();
+
+    /**
+     * @return true, if the result was cut at the maximum count of rows of the
+     * query options and the query returned more rows
+     */
+    boolean isTruncated();
 }
@@ -0,0 +1,41 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * a cypher query together with its parameters, e.g. as part of a batch.
+ *
+ * @author rhk
+ */
+public class CypherStatement implements Serializable {
+
+    private final String query;
+    private final Map<String, Object> params;
+
+    public CypherStatement(String query) {
+        this(query, Collections.<String, Object>emptyMap());
+    }
+
+    public CypherStatement(String query, Map<String, Object> params) {
+        if (query == null) {
+            throw new IllegalArgumentException("query must not be null!");
+        }
+        this.query = query;
+        this.params = params == null ? Collections.<String, Object>emptyMap() : params;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return query + " " + params;
+    }
+}
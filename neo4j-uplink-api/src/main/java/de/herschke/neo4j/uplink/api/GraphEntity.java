@@ -1,8 +1,8 @@
 package de.herschke.neo4j.uplink.api;
 
 import java.io.Serializable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.Map;
 import org.json.simple.JSONObject;
 
 /**
@@ -12,8 +12,17 @@ import org.json.simple.JSONObject;
  */
 public abstract class GraphEntity implements Serializable {
 
-    protected static final Pattern selfUrlPattern = Pattern.compile("http://.+/db/data/(node|relationship)/(\\d+)");
-    private final int id;
+    public static final String NODE = "node";
+    public static final String RELATIONSHIP = "relationship";
+    /**
+     * the id of an entity, whose self url was not parsed yet.
+     */
+    private static final long UNPARSED = -1;
+    /**
+     * volatile, as a long may be torn, if another thread parses it
+     * concurrently.
+     */
+    private volatile long id = UNPARSED;
     protected final JSONObject entity;
 
     public GraphEntity(String type, JSONObject entity) {
@@ -21,21 +30,35 @@ public abstract class GraphEntity implements Serializable {
             throw new IllegalArgumentException("given map is not a graphEntity, must contain 'self' and 'data' entry!");
         }
         String selfUrl = (String) entity.get("self");
-        Matcher m = selfUrlPattern.matcher(selfUrl);
-        if (m.matches()) {
-            if (type.equalsIgnoreCase(m.group(1))) {
-                this.id = Integer.parseInt(m.group(2));
-                this.entity = entity;
-            } else {
-                throw new IllegalArgumentException("map is not of type: " + type);
-            }
-        } else {
-            throw new IllegalArgumentException("self entry of map must match: " + selfUrlPattern.pattern());
+        String selfType = getEntityType(selfUrl);
+        if (selfType == null) {
+            throw new IllegalArgumentException("self entry of map must end with /node/<id> or /relationship/<id>: " + selfUrl);
+        }
+        if (!type.equalsIgnoreCase(selfType)) {
+            throw new IllegalArgumentException("map is not of type: " + type);
+        }
+        this.entity = entity;
+    }
+
+    /**
+     * @return the id, that is parsed from the self url on first access
+     */
+    public long getId() {
+        long parsed = id;
+        if (parsed == UNPARSED) {
+            parsed = parseId((String) entity.get("self"));
+            id = parsed;
         }
+        return parsed;
     }
 
-    public int getId() {
-        return this.id;
+    /**
+     * @return a read-only view on the json representation of this entity, as
+     * it was returned by the server
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> asMap() {
+        return Collections.unmodifiableMap(entity);
     }
 
     public Object getPropertyValue(String name) {
@@ -45,4 +68,65 @@ public abstract class GraphEntity implements Serializable {
     public boolean hasProperty(String name) {
         return ((JSONObject) entity.get("data")).containsKey(name);
     }
+
+    /**
+     * determines the type of an entity from the tail of its url, so the
+     * scheme and the base path of the server do not matter.
+     *
+     * @return {@link #NODE}, if the url ends with /node/&lt;id&gt;,
+     * {@link #RELATIONSHIP}, if it ends with /relationship/&lt;id&gt;, or null
+     */
+    public static String getEntityType(String url) {
+        int idStart = url == null ? -1 : findIdStart(url);
+        if (idStart < 0) {
+            return null;
+        }
+        if (hasSegmentBefore(url, idStart, NODE)) {
+            return NODE;
+        }
+        if (hasSegmentBefore(url, idStart, RELATIONSHIP)) {
+            return RELATIONSHIP;
+        }
+        return null;
+    }
+
+    /**
+     * @return the id at the end of the url of a node or relationship
+     * @throws IllegalArgumentException if the url does not end with an id
+     */
+    public static long parseId(String url) {
+        int idStart = url == null ? -1 : findIdStart(url);
+        if (idStart < 0) {
+            throw new IllegalArgumentException("url does not end with an id: " + url);
+        }
+        long id = 0;
+        for (int i = idStart; i < url.length(); i++) {
+            int digit = url.charAt(i) - '0';
+            if (id > (Long.MAX_VALUE - digit) / 10) {
+                throw new IllegalArgumentException("id is out of range: " + url);
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    /**
+     * @return the index of the id in the last segment of the url, or -1, if
+     * the last segment is not a number
+     */
+    private static int findIdStart(String url) {
+        int start = url.length();
+        while (start > 0 && url.charAt(start - 1) >= '0' && url.charAt(start - 1) <= '9') {
+            start--;
+        }
+        if (start == url.length() || start == 0 || url.charAt(start - 1) != '/') {
+            return -1;
+        }
+        return start;
+    }
+
+    private static boolean hasSegmentBefore(String url, int idStart, String segment) {
+        int segmentStart = idStart - 1 - segment.length();
+        return segmentStart > 0 && url.charAt(segmentStart - 1) == '/' && url.regionMatches(segmentStart, segment, 0, segment.length());
+    }
 }
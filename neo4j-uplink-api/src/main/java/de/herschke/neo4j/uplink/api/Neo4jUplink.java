@@ -1,6 +1,9 @@
 package de.herschke.neo4j.uplink.api;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * this is the Uplink API interface
@@ -12,4 +15,93 @@ public interface Neo4jUplink {
     boolean createNodeIndex(String name, Map<String, Object> config) throws CypherException;
 
     CypherResult executeCypherQuery(String query, Map<String, Object> params) throws CypherException;
+
+    /**
+     * executes the query with the given options. A result, that is taken from
+     * the result cache, may be shared with other callers.
+     */
+    CypherResult executeCypherQuery(String query, Map<String, Object> params, CypherQueryOptions options) throws CypherException;
+
+    /**
+     * executes the query and maps each row onto an object of the given class,
+     * while the response is parsed. A column is mapped onto the property of
+     * its name, e.g. 'm.title' onto 'title', and the properties of a returned
+     * node onto the properties of the same name. The objects are created by
+     * a constructor annotated with {@link java.beans.ConstructorProperties}
+     * or by the no-arg constructor and the setters. Strings, numbers, enums,
+     * nodes and maps are taken from the first column.
+     * <p>
+     * The result is not cached.
+     *
+     * @throws CypherException if a row cannot be mapped onto the class
+     */
+    <T> List<T> executeCypherQuery(String query, Map<String, Object> params, Class<T> type) throws CypherException;
+
+    /**
+     * executes the query with the given options and maps each row onto an
+     * object of the given class, see
+     * {@link #executeCypherQuery(String, Map, Class)}.
+     */
+    <T> List<T> executeCypherQuery(String query, Map<String, Object> params, CypherQueryOptions options, Class<T> type) throws CypherException;
+
+    /**
+     * executes the query and returns a cursor, that reads the rows lazily from
+     * the response. The caller is responsible to close the cursor.
+     */
+    CypherCursor openCypherCursor(String query, Map<String, Object> params) throws CypherException;
+
+    /**
+     * creates the node index asynchronously. A {@link CypherException} is
+     * reported as cause of the {@link java.util.concurrent.ExecutionException}
+     * thrown by {@link Future#get()}.
+     */
+    Future<Boolean> createNodeIndexAsync(String name, Map<String, Object> config) throws CypherException;
+
+    /**
+     * executes the query asynchronously. The response is parsed before the
+     * returned future completes. A {@link CypherException} is reported as
+     * cause of the {@link java.util.concurrent.ExecutionException} thrown by
+     * {@link Future#get()}.
+     */
+    Future<CypherResult> executeCypherQueryAsync(String query, Map<String, Object> params) throws CypherException;
+
+    /**
+     * executes all statements in one request to the batch endpoint of the
+     * server. The batch is executed in one transaction.
+     *
+     * @return one result per statement, in the order of the statements
+     * @throws CypherBatchException if one of the statements failed
+     */
+    List<CypherResult> executeCypherBatch(List<CypherStatement> statements) throws CypherException;
+
+    /**
+     * writes the rows in chunks with the default {@link BulkWriteOptions}, see
+     * {@link #executeCypherBulkWrite(String, Iterator, BulkWriteOptions)}.
+     */
+    BulkWriteResult executeCypherBulkWrite(String query, Iterable<?> rows) throws CypherException;
+
+    /**
+     * writes many rows, e.g. beans, with a query, that takes a chunk of them
+     * as the parameter named by {@link BulkWriteOptions#getRowsParameter()},
+     * e.g. <code>UNWIND {rows} AS row CREATE (n {row})</code>. The chunks are
+     * sent concurrently, their size adapts to the latency of the server.
+     * <p>
+     * Each chunk is executed in its own transaction. A failed chunk is
+     * reported in the result and to the listener, the other chunks are
+     * written nevertheless.
+     *
+     * @param rows the rows, that are read by the calling thread only
+     */
+    BulkWriteResult executeCypherBulkWrite(String query, Iterator<?> rows, BulkWriteOptions options) throws CypherException;
+
+    /**
+     * removes all results from the result cache.
+     */
+    void invalidateCachedResults();
+
+    /**
+     * removes the results of the given query from the result cache, whatever
+     * parameters were used.
+     */
+    void invalidateCachedResults(String query);
 }
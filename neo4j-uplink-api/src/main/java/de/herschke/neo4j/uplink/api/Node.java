@@ -10,7 +10,7 @@ import org.json.simple.JSONObject;
 public class Node extends GraphEntity {
 
     public Node(JSONObject entity) {
-        super("node", entity);
+        super(NODE, entity);
     }
 
     @Override
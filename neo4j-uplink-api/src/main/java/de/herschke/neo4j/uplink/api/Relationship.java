@@ -1,6 +1,5 @@
 package de.herschke.neo4j.uplink.api;
 
-import java.util.regex.Matcher;
 import org.json.simple.JSONObject;
 
 /**
@@ -10,42 +9,47 @@ import org.json.simple.JSONObject;
  */
 public class Relationship extends GraphEntity {
 
-    private final int startId, endId;
+    private volatile long startId = -1, endId = -1;
 
     public Relationship(JSONObject entity) {
-        super("relationship", entity);
-        Matcher m = selfUrlPattern.matcher((String) entity.get("start"));
-        if (m.matches()) {
-            if ("node".equalsIgnoreCase(m.group(1))) {
-                this.startId = Integer.parseInt(m.group(2));
-            } else {
-                throw new IllegalArgumentException("start of relationship is not a node");
-            }
-        } else {
-            throw new IllegalArgumentException("start url must match: " + selfUrlPattern.pattern());
-        }
-        m = selfUrlPattern.matcher((String) entity.get("end"));
-        if (m.matches()) {
-            if ("node".equalsIgnoreCase(m.group(1))) {
-                this.endId = Integer.parseInt(m.group(2));
-            } else {
-                throw new IllegalArgumentException("end of relationship is not a node");
-            }
-        } else {
-            throw new IllegalArgumentException("end url must match: " + selfUrlPattern.pattern());
-        }
+        super(RELATIONSHIP, entity);
     }
 
     public String getType() {
         return (String) entity.get("type");
     }
 
-    public int getStartId() {
-        return startId;
+    /**
+     * @return the id of the start node, that is parsed from the start url on
+     * first access
+     */
+    public long getStartId() {
+        long parsed = startId;
+        if (parsed < 0) {
+            parsed = parseNodeId((String) entity.get("start"), "start");
+            startId = parsed;
+        }
+        return parsed;
     }
 
-    public int getEndId() {
-        return endId;
+    /**
+     * @return the id of the end node, that is parsed from the end url on
+     * first access
+     */
+    public long getEndId() {
+        long parsed = endId;
+        if (parsed < 0) {
+            parsed = parseNodeId((String) entity.get("end"), "end");
+            endId = parsed;
+        }
+        return parsed;
+    }
+
+    private static long parseNodeId(String url, String name) {
+        if (!NODE.equals(getEntityType(url))) {
+            throw new IllegalArgumentException(name + " of relationship is not a node: " + url);
+        }
+        return parseId(url);
     }
 
     @Override
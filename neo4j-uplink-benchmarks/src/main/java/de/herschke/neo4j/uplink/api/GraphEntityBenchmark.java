@@ -0,0 +1,66 @@
+package de.herschke.neo4j.uplink.api;
+
+import java.util.concurrent.TimeUnit;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * creates nodes and relationships from the maps of a cypher response.
+ *
+ * @author rhk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphEntityBenchmark {
+
+    private JSONObject node;
+    private JSONObject relationship;
+
+    @Setup
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    public void createEntities() {
+        node = new JSONObject();
+        node.put("self", "http://localhost:7474/db/data/node/123456");
+        node.put("data", new JSONObject());
+        relationship = new JSONObject();
+        relationship.put("self", "http://localhost:7474/db/data/relationship/987654");
+        relationship.put("start", "http://localhost:7474/db/data/node/123456");
+        relationship.put("end", "http://localhost:7474/db/data/node/654321");
+        relationship.put("type", "ACTS_IN");
+        relationship.put("data", new JSONObject());
+    }
+
+    @Benchmark
+    public Node createNode() {
+        return new Node(node);
+    }
+
+    @Benchmark
+    public long createNodeAndGetId() {
+        return new Node(node).getId();
+    }
+
+    @Benchmark
+    public Relationship createRelationship() {
+        return new Relationship(relationship);
+    }
+
+    @Benchmark
+    public long createRelationshipAndGetIds() {
+        Relationship rel = new Relationship(relationship);
+        return rel.getId() + rel.getStartId() + rel.getEndId();
+    }
+}
@@ -0,0 +1,43 @@
+package de.herschke.neo4j.uplink.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the arguments of a command line in the form name=value.
+ *
+ * @author rhk
+ */
+public class Arguments {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public Arguments(String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("argument must be in the form name=value: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+}
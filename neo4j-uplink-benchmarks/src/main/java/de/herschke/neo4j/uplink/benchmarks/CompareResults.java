@@ -0,0 +1,100 @@
+package de.herschke.neo4j.uplink.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * compares the json results of two benchmark runs, e.g. of two builds:
+ * <p>
+ * <pre>
+ * java -cp target/benchmarks.jar de.herschke.neo4j.uplink.benchmarks.CompareResults baseline.json candidate.json
+ * </pre>
+ * <p>
+ * For each benchmark and parameter combination, the score and the allocated
+ * bytes per operation of both runs and the change are printed.
+ *
+ * @author rhk
+ */
+public final class CompareResults {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    private static final String PACKAGE_PREFIX = "de.herschke.neo4j.uplink.";
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length != 2) {
+            System.err.println("usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(1);
+            return;
+        }
+        Map<String, JSONObject> baseline = readResults(args[0]);
+        Map<String, JSONObject> candidate = readResults(args[1]);
+        System.out.printf("%-70s %14s %14s %8s %12s %12s %8s%n", "benchmark", "baseline", "candidate", "change", "B/op base", "B/op cand", "change");
+        for (Map.Entry<String, JSONObject> entry : baseline.entrySet()) {
+            JSONObject other = candidate.get(entry.getKey());
+            if (other == null) {
+                System.out.printf("%-70s only in baseline%n", entry.getKey());
+                continue;
+            }
+            double score = getScore(entry.getValue(), null);
+            double otherScore = getScore(other, null);
+            double allocation = getScore(entry.getValue(), ALLOCATION);
+            double otherAllocation = getScore(other, ALLOCATION);
+            System.out.printf("%-70s %14.3f %14.3f %7.1f%% %12.0f %12.0f %7.1f%%%n", entry.getKey(),
+                    score, otherScore, change(score, otherScore),
+                    allocation, otherAllocation, change(allocation, otherAllocation));
+        }
+        for (String key : candidate.keySet()) {
+            if (!baseline.containsKey(key)) {
+                System.out.printf("%-70s only in candidate%n", key);
+            }
+        }
+    }
+
+    /**
+     * @return the results keyed on benchmark, mode and parameters
+     */
+    private static Map<String, JSONObject> readResults(String fileName) throws IOException, ParseException {
+        Map<String, JSONObject> results = new LinkedHashMap<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(fileName), "UTF-8")) {
+            for (Object result : (JSONArray) new JSONParser().parse(reader)) {
+                JSONObject benchmark = (JSONObject) result;
+                String name = (String) benchmark.get("benchmark");
+                StringBuilder key = new StringBuilder(name.startsWith(PACKAGE_PREFIX) ? name.substring(PACKAGE_PREFIX.length()) : name);
+                key.append(" [").append(benchmark.get("mode")).append(']');
+                Map<?, ?> params = (Map<?, ?>) benchmark.get("params");
+                if (params != null) {
+                    key.append(new TreeMap<>(params));
+                }
+                results.put(key.toString(), benchmark);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param metric the name of the secondary metric, or null for the primary
+     * metric
+     * @return the score, or NaN, if the metric was not measured
+     */
+    private static double getScore(JSONObject benchmark, String metric) {
+        JSONObject metrics = metric == null ? benchmark : (JSONObject) benchmark.get("secondaryMetrics");
+        JSONObject result = metrics == null ? null : (JSONObject) metrics.get(metric == null ? "primaryMetric" : metric);
+        return result == null ? Double.NaN : ((Number) result.get("score")).doubleValue();
+    }
+
+    private static double change(double baseline, double candidate) {
+        return (candidate - baseline) * 100 / baseline;
+    }
+}
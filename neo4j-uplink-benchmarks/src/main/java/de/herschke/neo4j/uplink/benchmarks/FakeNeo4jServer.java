@@ -0,0 +1,243 @@
+package de.herschke.neo4j.uplink.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONValue;
+
+/**
+ * a stand-in for the ReST API of a Neo4j Server, that answers the cypher,
+ * node index and batch endpoints with canned or generated responses, so the
+ * client can be load tested without a server.
+ * <p>
+ * The requests are not interpreted: every cypher request is answered with the
+ * same response, that is either read from a file or generated with the
+ * configured count of rows and payload size. Each response is delayed by the
+ * configured latency.
+ * <p>
+ * Like a server behind a compressing proxy, it accepts gzip compressed
+ * requests and compresses the responses, if the client accepts gzip.
+ * <p>
+ * The server can be started standalone:
+ * <p>
+ * <pre>
+ * java -cp target/benchmarks.jar de.herschke.neo4j.uplink.benchmarks.FakeNeo4jServer port=7474 rows=100 payload=64 latency=2
+ * </pre>
+ *
+ * @author rhk
+ */
+public class FakeNeo4jServer implements AutoCloseable {
+
+    private static final String BASE_PATH = "/db/data/";
+    private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long latency = 0;
+    private volatile long latencyJitter = 0;
+    private volatile byte[] cypherResponse;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public FakeNeo4jServer(int port) throws IOException {
+        if (System.getProperty(NO_DELAY) == null) {
+            // otherwise, the response body waits for the delayed ack of the headers
+            System.setProperty(NO_DELAY, "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext(BASE_PATH + "cypher", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                readRequest(exchange);
+                respond(exchange, 200, cypherResponse);
+            }
+        });
+        server.createContext(BASE_PATH + "index/node", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                readRequest(exchange);
+                respond(exchange, 201, "{\"template\":\"http://localhost/db/data/index/node/fake/{key}/{value}\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext(BASE_PATH + "batch", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] request = readRequest(exchange);
+                respond(exchange, 200, createBatchResponse(request));
+            }
+        });
+        setResponse(10, 32);
+    }
+
+    /**
+     * generates the response of the cypher endpoint.
+     *
+     * @param rows the count of rows, each with a node, a number and a string
+     * @param payloadSize the length of the string in each row
+     */
+    public final void setResponse(int rows, int payloadSize) {
+        StringBuilder payload = new StringBuilder(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            payload.append((char) ('a' + i % 26));
+        }
+        StringBuilder sb = new StringBuilder("{\"columns\":[\"n\",\"id\",\"payload\"],\"data\":[");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(',');
+            }
+            String self = "http://localhost/db/data/node/" + r;
+            sb.append("[{\"self\":\"").append(self).append("\",\"properties\":\"").append(self).append("/properties\",")
+                    .append("\"data\":{\"name\":\"node-").append(r).append("\"},\"extensions\":{}},")
+                    .append(r).append(",\"").append(payload).append("\"]");
+        }
+        sb.append("]}");
+        this.cypherResponse = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * uses the content of a file as response of the cypher endpoint.
+     */
+    public void setResponse(String fileName) throws IOException {
+        this.cypherResponse = Files.readAllBytes(Paths.get(fileName));
+    }
+
+    /**
+     * @param latency the milliseconds, each response is delayed
+     * @param jitter the maximum milliseconds, that are randomly added to the
+     * latency
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.latencyJitter = jitter;
+    }
+
+    /**
+     * @return the size of the response of the cypher endpoint in bytes
+     */
+    public int getResponseSize() {
+        return cypherResponse.length;
+    }
+
+    /**
+     * @return the count of requests, that were answered
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the url of the server in the format http://host:port/db/data/
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private byte[] readRequest(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        try (InputStream in = body) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) >= 0;) {
+                request.write(buffer, 0, read);
+            }
+        }
+        return request.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        try {
+            long delay = latency + (latencyJitter > 0 ? ThreadLocalRandom.current().nextLong(latencyJitter + 1) : 0);
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        requestCount.incrementAndGet();
+    }
+
+    /**
+     * answers each job of the batch with the response of the cypher
+     * endpoint.
+     */
+    private byte[] createBatchResponse(byte[] request) {
+        Object jobs = JSONValue.parse(new String(request, StandardCharsets.UTF_8));
+        int jobCount = jobs instanceof JSONArray ? ((JSONArray) jobs).size() : 0;
+        String body = new String(cypherResponse, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < jobCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"from\":\"/cypher\",\"body\":").append(body).append(",\"status\":200}");
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Arguments arguments = new Arguments(args);
+        final FakeNeo4jServer server = new FakeNeo4jServer(arguments.getInt("port", 7474));
+        if (arguments.has("response")) {
+            server.setResponse(arguments.get("response", null));
+        } else {
+            server.setResponse(arguments.getInt("rows", 10), arguments.getInt("payload", 32));
+        }
+        server.setLatency(arguments.getLong("latency", 0), arguments.getLong("jitter", 0));
+        server.start();
+        System.out.printf("fake server listens on %s, cypher response has %d bytes%n", server.getUrl(), server.getResponseSize());
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.close();
+            }
+        });
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,240 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.api.BulkWriteResult;
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherQueryOptions;
+import de.herschke.neo4j.uplink.api.CypherStatement;
+import de.herschke.neo4j.uplink.api.Neo4jUplink;
+import de.herschke.neo4j.uplink.benchmarks.Arguments;
+import de.herschke.neo4j.uplink.benchmarks.FakeNeo4jServer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * drives a {@link Neo4jRestService} with concurrent callers and reports the
+ * throughput and the latency percentiles, as seen by the callers.
+ * <p>
+ * If no url is given, a {@link FakeNeo4jServer} is started, so the capacity of
+ * the client is measured in isolation:
+ * <p>
+ * <pre>
+ * java -cp target/benchmarks.jar de.herschke.neo4j.uplink.ejb.LoadDriver threads=32 duration=30 rows=100 latency=2
+ * </pre>
+ * <p>
+ * The arguments are given as name=value:
+ * <ul>
+ * <li>url: the url of the server, default: a fake server</li>
+ * <li>threads: the count of concurrent callers, default 16</li>
+ * <li>warmup, duration: the seconds of the warm-up and the measurement,
+ * default 5 and 30</li>
+ * <li>operation: query, batch, bulk or index, default query</li>
+ * <li>query: the cypher query</li>
+ * <li>batch-size: the count of statements of a batch or of rows of a bulk
+ * write, default 10</li>
+ * <li>rows, payload, latency, jitter, response: the response of the fake
+ * server, see {@link FakeNeo4jServer}</li>
+ * <li>transport, parser, max-concurrent-requests, pool-max-connections,
+ * response-compression, request-compression-threshold, replica-urls,
+ * hedge-budget: the env-entries of the {@link Neo4jRestService}</li>
+ * <li>hedged: true to hedge the queries, default false</li>
+ * </ul>
+ *
+ * @author rhk
+ */
+public class LoadDriver {
+
+    /**
+     * an operation, that is executed by the callers.
+     */
+    private interface Operation {
+
+        void execute(Neo4jUplink uplink) throws CypherException;
+    }
+
+    /**
+     * the latencies, that were recorded by one caller.
+     */
+    private static class Latencies {
+
+        private long[] nanos = new long[1024];
+        private int count = 0;
+        private long errors = 0;
+
+        void record(long latency) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        FakeNeo4jServer server = null;
+        String url = arguments.get("url", null);
+        if (url == null) {
+            server = new FakeNeo4jServer(0);
+            if (arguments.has("response")) {
+                server.setResponse(arguments.get("response", null));
+            } else {
+                server.setResponse(arguments.getInt("rows", 10), arguments.getInt("payload", 32));
+            }
+            server.setLatency(arguments.getLong("latency", 0), arguments.getLong("jitter", 0));
+            server.start();
+            url = server.getUrl();
+        }
+        int threads = arguments.getInt("threads", 16);
+        Neo4jRestService service = new Neo4jRestService();
+        service.neo4jURL = url;
+        service.transportName = arguments.get("transport", service.transportName);
+        service.responseParserName = arguments.get("parser", service.responseParserName);
+        service.maxConcurrentRequests = arguments.getInt("max-concurrent-requests", service.maxConcurrentRequests);
+        service.poolMaxConnections = arguments.getInt("pool-max-connections", service.poolMaxConnections);
+        service.poolMaxConnectionsPerRoute = service.poolMaxConnections;
+        service.responseCompression = Boolean.parseBoolean(arguments.get("response-compression", String.valueOf(service.responseCompression)));
+        service.requestCompressionThreshold = arguments.getInt("request-compression-threshold", service.requestCompressionThreshold);
+        service.replicaURLs = arguments.get("replica-urls", service.replicaURLs);
+        service.hedgeBudget = Double.parseDouble(arguments.get("hedge-budget", String.valueOf(service.hedgeBudget)));
+        service.init();
+        try {
+            Operation operation = createOperation(arguments);
+            System.out.printf("%d callers against %s%s%n", threads, url, server == null ? "" : String.format(" (fake server, %d bytes per response)", server.getResponseSize()));
+            run(service, operation, threads, arguments.getLong("warmup", 5));
+            long duration = arguments.getLong("duration", 30);
+            List<Latencies> latencies = run(service, operation, threads, duration);
+            report(latencies, duration);
+        } finally {
+            service.destroy();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static Operation createOperation(Arguments arguments) {
+        final String query = arguments.get("query", "START n=node(*) RETURN n, ID(n), n.payload");
+        final Map<String, Object> params = Collections.<String, Object>singletonMap("limit", 10);
+        final CypherQueryOptions options = new CypherQueryOptions();
+        options.setHedged(Boolean.parseBoolean(arguments.get("hedged", "false")));
+        switch (arguments.get("operation", "query")) {
+            case "query":
+                return new Operation() {
+                    @Override
+                    public void execute(Neo4jUplink uplink) throws CypherException {
+                        uplink.executeCypherQuery(query, params, options);
+                    }
+                };
+            case "batch":
+                final List<CypherStatement> statements = new ArrayList<>();
+                for (int i = arguments.getInt("batch-size", 10); i > 0; i--) {
+                    statements.add(new CypherStatement(query, params));
+                }
+                return new Operation() {
+                    @Override
+                    public void execute(Neo4jUplink uplink) throws CypherException {
+                        uplink.executeCypherBatch(statements);
+                    }
+                };
+            case "bulk":
+                final List<Map<String, Object>> rows = new ArrayList<>();
+                for (int i = arguments.getInt("batch-size", 10); i > 0; i--) {
+                    rows.add(params);
+                }
+                final String bulkQuery = arguments.get("query", "UNWIND {rows} AS row CREATE (n {row})");
+                return new Operation() {
+                    @Override
+                    public void execute(Neo4jUplink uplink) throws CypherException {
+                        BulkWriteResult result = uplink.executeCypherBulkWrite(bulkQuery, rows);
+                        if (!result.isComplete()) {
+                            throw result.getFailures().get(0).getException();
+                        }
+                    }
+                };
+            case "index":
+                return new Operation() {
+                    @Override
+                    public void execute(Neo4jUplink uplink) throws CypherException {
+                        uplink.createNodeIndex("load-test", Collections.<String, Object>emptyMap());
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown operation: " + arguments.get("operation", null));
+        }
+    }
+
+    private static List<Latencies> run(final Neo4jUplink uplink, final Operation operation, int threads, long seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final CountDownLatch finished = new CountDownLatch(threads);
+        final AtomicLong firstError = new AtomicLong();
+        List<Latencies> latencies = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Latencies caller = new Latencies();
+            latencies.add(caller);
+            Thread thread = new Thread("load-driver-" + t) {
+                @Override
+                public void run() {
+                    try {
+                        while (System.nanoTime() - deadline < 0) {
+                            long start = System.nanoTime();
+                            try {
+                                operation.execute(uplink);
+                                caller.record(System.nanoTime() - start);
+                            } catch (CypherException | RuntimeException ex) {
+                                caller.errors++;
+                                if (firstError.compareAndSet(0, 1)) {
+                                    System.err.println("first error: " + ex);
+                                }
+                            }
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+        finished.await();
+        return latencies;
+    }
+
+    private static void report(List<Latencies> latencies, long seconds) {
+        int count = 0;
+        long errors = 0;
+        for (Latencies caller : latencies) {
+            count += caller.count;
+            errors += caller.errors;
+        }
+        long[] all = new long[count];
+        int offset = 0;
+        long sum = 0;
+        for (Latencies caller : latencies) {
+            System.arraycopy(caller.nanos, 0, all, offset, caller.count);
+            offset += caller.count;
+        }
+        for (long latency : all) {
+            sum += latency;
+        }
+        Arrays.sort(all);
+        System.out.printf("operations: %d, errors: %d, throughput: %.1f ops/s%n", count, errors, count / (double) seconds);
+        if (count > 0) {
+            System.out.printf("latency ms: mean %.3f, p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                    sum / (double) count / 1e6, percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), all[count - 1] / 1e6);
+        }
+    }
+
+    /**
+     * @return the latency in milliseconds, that is not exceeded by the given
+     * fraction of the sorted latencies
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,175 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * writes the parameters of a cypher request, that contain a graph of beans.
+ *
+ * @author rhk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonRequestWriterBenchmark {
+
+    private static final String QUERY = "CREATE (m {movie}) RETURN m";
+
+    public static class Person {
+
+        private final String name;
+        private final int born;
+
+        public Person(String name, int born) {
+            this.name = name;
+            this.born = born;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getBorn() {
+            return born;
+        }
+    }
+
+    public static class Role {
+
+        private final Person actor;
+        private final String character;
+
+        public Role(Person actor, String character) {
+            this.actor = actor;
+            this.character = character;
+        }
+
+        public Person getActor() {
+            return actor;
+        }
+
+        public String getCharacter() {
+            return character;
+        }
+    }
+
+    public static class Movie {
+
+        private final String title;
+        private final int released;
+        private final Person director;
+        private final List<Role> roles;
+
+        public Movie(String title, int released, Person director, List<Role> roles) {
+            this.title = title;
+            this.released = released;
+            this.director = director;
+            this.roles = roles;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getReleased() {
+            return released;
+        }
+
+        public Person getDirector() {
+            return director;
+        }
+
+        public List<Role> getRoles() {
+            return roles;
+        }
+    }
+
+    /**
+     * discards the written characters.
+     */
+    private static final Writer NULL_WRITER = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(int c) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    /**
+     * discards the written bytes.
+     */
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    @Param({"1", "100"})
+    public int roles;
+    private Map<String, Object> params;
+
+    @Setup
+    public void createParams() {
+        List<Role> movieRoles = new ArrayList<>();
+        for (int i = 0; i < roles; i++) {
+            movieRoles.add(new Role(new Person("Actor \"" + i + "\"", 1950 + i % 50), "Character " + i));
+        }
+        params = new LinkedHashMap<>();
+        params.put("movie", new Movie("The Matrix", 1999, new Person("Lana Wachowski", 1965), movieRoles));
+        params.put("limit", 10);
+    }
+
+    @Benchmark
+    public void writeCypherRequest() throws IOException, CypherException {
+        new JsonRequestWriter(NULL_WRITER, false).writeCypherRequest(QUERY, params);
+    }
+
+    @Benchmark
+    public String toCanonicalParams() throws IOException, CypherException {
+        return JsonRequestWriter.toCanonicalParams(params);
+    }
+
+    @Benchmark
+    public long writeEntity() throws IOException {
+        JsonRequestEntity entity = JsonRequestEntity.cypherRequest(QUERY, params);
+        entity.write(NULL_STREAM);
+        return entity.getWrittenBytes();
+    }
+}
@@ -0,0 +1,48 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parses complete cypher responses of different shapes into a result.
+ *
+ * @author rhk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CypherResponseParsingBenchmark {
+
+    @Param({"SMALL", "WIDE", "NESTED", "LARGE"})
+    public CypherResponses.Shape shape;
+    @Param({CypherResponseParsers.JSON_SIMPLE, CypherResponseParsers.JACKSON})
+    public String parser;
+    private byte[] response;
+
+    @Setup
+    public void createResponse() {
+        response = CypherResponses.create(shape);
+    }
+
+    @Benchmark
+    public CypherResult parse() throws IOException, ParseException {
+        return CypherResponseParsers.create(parser).parse(new ByteArrayInputStream(response));
+    }
+}
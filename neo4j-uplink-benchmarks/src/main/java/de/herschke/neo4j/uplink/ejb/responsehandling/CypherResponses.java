@@ -0,0 +1,128 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * creates the cypher responses, that are parsed by the benchmarks.
+ *
+ * @author rhk
+ */
+public final class CypherResponses {
+
+    /**
+     * the shapes of the responses.
+     */
+    public enum Shape {
+
+        /**
+         * 10 rows with a node and two scalar columns.
+         */
+        SMALL(10, 3, 0),
+        /**
+         * 1000 rows with 50 scalar columns.
+         */
+        WIDE(1000, 50, 0),
+        /**
+         * 1000 rows with a node and a map, whose values are nested 8 levels
+         * deep.
+         */
+        NESTED(1000, 2, 8),
+        /**
+         * 100000 rows with a node and two scalar columns.
+         */
+        LARGE(100000, 3, 0);
+        private final int rows;
+        private final int columns;
+        private final int depth;
+
+        private Shape(int rows, int columns, int depth) {
+            this.rows = rows;
+            this.columns = columns;
+            this.depth = depth;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    private CypherResponses() {
+    }
+
+    /**
+     * @return the utf-8 encoded response of the given shape
+     */
+    public static byte[] create(Shape shape) {
+        StringBuilder sb = new StringBuilder("{\"columns\":[");
+        for (int c = 0; c < shape.columns; c++) {
+            if (c > 0) {
+                sb.append(',');
+            }
+            sb.append("\"c").append(c).append('"');
+        }
+        sb.append("],\"data\":[");
+        for (int r = 0; r < shape.rows; r++) {
+            if (r > 0) {
+                sb.append(',');
+            }
+            sb.append('[');
+            for (int c = 0; c < shape.columns; c++) {
+                if (c > 0) {
+                    sb.append(',');
+                }
+                if (shape == Shape.WIDE) {
+                    appendScalar(sb, r, c);
+                } else if (c == 0) {
+                    appendNode(sb, r);
+                } else if (shape.depth > 0) {
+                    appendNested(sb, r, shape.depth);
+                } else {
+                    appendScalar(sb, r, c);
+                }
+            }
+            sb.append(']');
+        }
+        sb.append("]}");
+        try {
+            return sb.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void appendScalar(StringBuilder sb, int row, int column) {
+        switch (column % 4) {
+            case 0:
+                sb.append(row * 31L + column);
+                break;
+            case 1:
+                sb.append("\"value-").append(row).append('-').append(column).append('"');
+                break;
+            case 2:
+                sb.append(row * 0.25);
+                break;
+            default:
+                sb.append(row % 2 == 0);
+        }
+    }
+
+    private static void appendNode(StringBuilder sb, int row) {
+        String self = "http://localhost:7474/db/data/node/" + row;
+        sb.append("{\"outgoing_relationships\":\"").append(self).append("/relationships/out\",")
+                .append("\"data\":{\"name\":\"name-").append(row).append("\",\"born\":").append(1900 + row % 100).append("},")
+                .append("\"traverse\":\"").append(self).append("/traverse/{returnType}\",")
+                .append("\"self\":\"").append(self).append("\",")
+                .append("\"properties\":\"").append(self).append("/properties\",")
+                .append("\"extensions\":{}}");
+    }
+
+    private static void appendNested(StringBuilder sb, int row, int depth) {
+        if (depth == 0) {
+            sb.append('[').append(row).append(",\"leaf\",").append(row * 0.5).append(']');
+            return;
+        }
+        sb.append("{\"level\":").append(depth).append(",\"tags\":[\"a\",\"b\"],\"child\":");
+        appendNested(sb, row, depth - 1);
+        sb.append('}');
+    }
+}
@@ -0,0 +1,91 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import static de.herschke.neo4j.uplink.ejb.responsehandling.CypherResultFixtures.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * serializes a result of nodes and values in the externalized format of
+ * {@link DefaultCypherResult} and, for comparison, as list of maps of json
+ * objects, the former form of a result. The write benchmarks report the size
+ * of the written form as secondary result {@code bytes}.
+ *
+ * @author rhk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CypherResultSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    public int rows;
+    private DefaultCypherResult result;
+    private ArrayList<Map<String, Object>> rowMaps;
+    private byte[] externalized;
+    private byte[] serializedRowMaps;
+
+    /**
+     * the size of the last written form of a result.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Size {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void createResult() throws IOException {
+        result = createNodeResult(rows, rows / 10);
+        rowMaps = createNodeRowMaps(rows, rows / 10);
+        externalized = serialize(result);
+        serializedRowMaps = serialize(rowMaps);
+    }
+
+    @Benchmark
+    public byte[] writeExternalized(Size size) throws IOException {
+        byte[] bytes = serialize(result);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] writeRowMaps(Size size) throws IOException {
+        byte[] bytes = serialize(rowMaps);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object readExternalized() throws IOException, ClassNotFoundException {
+        return deserialize(externalized);
+    }
+
+    @Benchmark
+    public Object readRowMaps() throws IOException, ClassNotFoundException {
+        return deserialize(serializedRowMaps);
+    }
+}
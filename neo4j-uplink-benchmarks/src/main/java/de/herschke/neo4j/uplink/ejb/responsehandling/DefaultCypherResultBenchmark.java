@@ -0,0 +1,107 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * reads all cells of a {@link DefaultCypherResult} through its different
+ * accessors.
+ *
+ * @author rhk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefaultCypherResultBenchmark {
+
+    private static final String[] COLUMNS = {"id", "name", "score", "flag"};
+    @Param({"100", "10000"})
+    public int rows;
+    private DefaultCypherResult result;
+
+    @Setup
+    public void createResult() {
+        result = new DefaultCypherResult();
+        for (String column : COLUMNS) {
+            result.addColumn(column);
+        }
+        for (int r = 0; r < rows; r++) {
+            result.addRow(r, Arrays.asList((long) r, "name-" + r, r * 0.5, r % 2 == 0));
+        }
+    }
+
+    @Benchmark
+    public void getValueByIndex(Blackhole blackhole) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                blackhole.consume(result.getValue(r, c));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getValueByName(Blackhole blackhole) {
+        for (int r = 0; r < rows; r++) {
+            for (String column : COLUMNS) {
+                blackhole.consume(result.getValue(r, column));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getColumnValues(Blackhole blackhole) {
+        for (String column : COLUMNS) {
+            for (Object value : result.getColumnValues(column)) {
+                blackhole.consume(value);
+            }
+        }
+    }
+
+    @Benchmark
+    public double sumColumnValues() {
+        double sum = 0;
+        for (Object value : result.getColumnValues("score")) {
+            sum += (Double) value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double sumDoubleColumn() {
+        double sum = 0;
+        for (double value : result.getDoubleColumn("score", 0.0)) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void iterateRows(Blackhole blackhole) {
+        for (Map<String, Object> row : result) {
+            for (String column : COLUMNS) {
+                blackhole.consume(row.get(column));
+            }
+        }
+    }
+
+    @Benchmark
+    public String toStringOfResult() {
+        return result.toString();
+    }
+}
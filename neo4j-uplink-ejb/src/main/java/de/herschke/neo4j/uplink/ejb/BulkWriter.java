@@ -0,0 +1,214 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.api.BulkWriteListener;
+import de.herschke.neo4j.uplink.api.BulkWriteOptions;
+import de.herschke.neo4j.uplink.api.BulkWriteResult;
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * writes the rows of a bulk write in chunks.
+ * <p>
+ * The calling thread reads the rows into chunks and hands them to the
+ * executor, until the parallelism of the options is reached. Then it waits for
+ * a chunk to complete, reports it to the listener and adapts the chunk size:
+ * by the ratio of the target latency to the latency of the chunk, at most
+ * doubling or halving it at once. A failed chunk halves the chunk size.
+ * <p>
+ * If the writing ends with an exception, e.g. because the rows cannot be read,
+ * the chunks, that were not started, are cancelled and the others are awaited,
+ * so no chunk is written after the caller got the exception.
+ *
+ * @author rhk
+ */
+class BulkWriter {
+
+    /**
+     * writes one chunk of rows.
+     */
+    interface ChunkWriter {
+
+        void write(List<Object> rows) throws CypherException;
+    }
+    private final ExecutorService executor;
+    private final ChunkWriter writer;
+    private final BulkWriteOptions options;
+    private final NanoClock clock;
+    private final long targetNanos;
+    private int chunkSize;
+    private long writtenRows = 0;
+    private int chunkCount = 0;
+    private final List<BulkWriteResult.Failure> failures = new ArrayList<>();
+
+    /**
+     * a chunk, that is written by the executor.
+     */
+    private class Chunk implements Callable<Chunk> {
+
+        private final long firstRow;
+        private final List<Object> rows;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private Future<Chunk> future;
+        private boolean cancelled = false;
+        private long nanos;
+        private CypherException failure;
+
+        Chunk(long firstRow, List<Object> rows) {
+            this.firstRow = firstRow;
+            this.rows = rows;
+        }
+
+        @Override
+        public Chunk call() {
+            if (!claimed.compareAndSet(false, true)) {
+                return this;
+            }
+            long start = clock.nanoTime();
+            try {
+                writer.write(rows);
+            } catch (CypherException ex) {
+                failure = ex;
+            } catch (RuntimeException ex) {
+                failure = new CypherException("the chunk could not be written: " + ex.getMessage(), ex);
+            }
+            nanos = clock.nanoTime() - start;
+            return this;
+        }
+
+        /**
+         * @return true, if the chunk was not started and will not be written
+         */
+        boolean cancel() {
+            cancelled = claimed.compareAndSet(false, true);
+            return cancelled;
+        }
+    }
+
+    BulkWriter(ExecutorService executor, ChunkWriter writer, BulkWriteOptions options) {
+        this(executor, writer, options, NanoClock.SYSTEM);
+    }
+
+    /**
+     * @param clock the clock, that measures the latency of the chunks
+     */
+    BulkWriter(ExecutorService executor, ChunkWriter writer, BulkWriteOptions options, NanoClock clock) {
+        this.executor = executor;
+        this.writer = writer;
+        this.options = options;
+        this.clock = clock;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(options.getTargetChunkLatency());
+        this.chunkSize = bound(options.getInitialChunkSize());
+    }
+
+    BulkWriteResult write(Iterator<?> rows) throws CypherException {
+        long start = System.nanoTime();
+        CompletionService<Chunk> chunks = new ExecutorCompletionService<>(executor);
+        List<Chunk> inFlight = new ArrayList<>();
+        long nextRow = 0;
+        try {
+            while (rows.hasNext() || !inFlight.isEmpty()) {
+                if (rows.hasNext() && inFlight.size() < options.getParallelism()) {
+                    List<Object> values = new ArrayList<>(chunkSize);
+                    while (values.size() < chunkSize && rows.hasNext()) {
+                        values.add(rows.next());
+                    }
+                    Chunk chunk = new Chunk(nextRow, values);
+                    chunk.future = chunks.submit(chunk);
+                    inFlight.add(chunk);
+                    nextRow += values.size();
+                    chunkCount++;
+                } else {
+                    Chunk chunk = chunks.take().get();
+                    inFlight.remove(chunk);
+                    completed(chunk);
+                }
+            }
+        } catch (InterruptedException ex) {
+            cancel(inFlight);
+            Thread.currentThread().interrupt();
+            throw new CypherException(String.format("interrupted while writing, %d rows were written", writtenRows), ex);
+        } catch (ExecutionException ex) {
+            cancel(inFlight);
+            // a chunk reports its failure, so only errors end up here
+            throw (Error) ex.getCause();
+        } catch (RuntimeException | Error ex) {
+            // e.g. the rows cannot be read
+            cancel(inFlight);
+            throw ex;
+        }
+        return new BulkWriteResult(writtenRows, chunkCount, failures, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * cancels the chunks, that were not started, and waits for the others,
+     * which are reported as usual.
+     */
+    private void cancel(List<Chunk> inFlight) {
+        for (Chunk chunk : inFlight) {
+            chunk.cancel();
+        }
+        boolean interrupted = false;
+        for (Chunk chunk : inFlight) {
+            if (chunk.cancelled) {
+                continue;
+            }
+            while (true) {
+                try {
+                    chunk.future.get();
+                    completed(chunk);
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void completed(Chunk chunk) {
+        BulkWriteListener listener = options.getListener();
+        if (chunk.failure != null) {
+            BulkWriteResult.Failure failure = new BulkWriteResult.Failure(chunk.firstRow, chunk.rows, chunk.failure);
+            failures.add(failure);
+            chunkSize = bound(chunkSize / 2);
+            if (listener != null) {
+                listener.chunkFailed(failure);
+            }
+        } else {
+            writtenRows += chunk.rows.size();
+            // the last chunk of the input may be too small to tell
+            if (targetNanos > 0 && chunk.rows.size() * 2 >= chunkSize) {
+                double ratio = Math.max(0.5, Math.min(2.0, (double) targetNanos / Math.max(1, chunk.nanos)));
+                chunkSize = bound((int) (chunk.rows.size() * ratio));
+            }
+            if (listener != null) {
+                listener.chunkWritten(chunk.firstRow, chunk.rows.size(), writtenRows);
+            }
+        }
+    }
+
+    private int bound(int size) {
+        return Math.max(options.getMinChunkSize(), Math.min(options.getMaxChunkSize(), size));
+    }
+
+    /**
+     * @return the size of the next chunk
+     */
+    int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -0,0 +1,135 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.ejb.metrics.LatencyHistogram;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decides, when a hedged query is sent a second time.
+ * <p>
+ * The delay is the given percentile of the latencies of the recent read
+ * queries, with the precision of the {@link LatencyHistogram}, but not less
+ * than the minimum delay. The latencies are collected in windows of
+ * {@value #WINDOW} queries, so the delay follows the server.
+ * <p>
+ * The extra load is capped by a budget: each hedgeable query earns the budget
+ * as a fraction of a token, each second request spends a whole token. So with
+ * a budget of 0.05 at most one of 20 queries is sent twice, apart from a
+ * short burst after a quiet period.
+ *
+ * @author rhk
+ */
+class HedgingPolicy implements HedgingPolicyMXBean {
+
+    private static final int WINDOW = 1000;
+    /**
+     * the count of latencies, that is needed for a meaningful percentile.
+     */
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_TOKENS = 10;
+    private final double budget;
+    private final double percentile;
+    private final long minDelayNanos;
+    private volatile LatencyHistogram latencies = new LatencyHistogram();
+    private volatile LatencyHistogram previousLatencies = null;
+    private double tokens = 0;
+    private long hedgeableCount = 0;
+    private long hedgeCount = 0;
+    private long hedgeWinCount = 0;
+    private long budgetExhaustedCount = 0;
+
+    /**
+     * @param budget the fraction of hedgeable queries, that may be sent twice
+     * @param percentile the percentile of the latencies, after which a query
+     * is sent a second time, between 0 and 1
+     * @param minDelayMillis the minimum delay, that is also used until enough
+     * latencies are known
+     */
+    HedgingPolicy(double budget, double percentile, long minDelayMillis) {
+        this.budget = budget;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+    }
+
+    /**
+     * records the latency of a read query, hedged or not.
+     */
+    void recordLatency(long nanos) {
+        LatencyHistogram histogram = latencies;
+        histogram.record(nanos);
+        if (histogram.getCount() >= WINDOW) {
+            synchronized (this) {
+                if (latencies == histogram) {
+                    previousLatencies = histogram;
+                    latencies = new LatencyHistogram();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the nanoseconds to wait for the first request of a hedged query
+     */
+    long getDelayNanos() {
+        LatencyHistogram histogram = latencies;
+        if (histogram.getCount() < MIN_SAMPLES && previousLatencies != null) {
+            histogram = previousLatencies;
+        }
+        if (histogram.getCount() < MIN_SAMPLES) {
+            return minDelayNanos;
+        }
+        return Math.max(minDelayNanos, (long) (histogram.getPercentileMillis(percentile) * 1000000));
+    }
+
+    /**
+     * a hedged query is executed, it earns its share of the budget.
+     */
+    synchronized void hedgeable() {
+        hedgeableCount++;
+        tokens = Math.min(MAX_TOKENS, tokens + budget);
+    }
+
+    /**
+     * @return true, if the budget allows to send the query a second time
+     */
+    synchronized boolean tryHedge() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            hedgeCount++;
+            return true;
+        }
+        budgetExhaustedCount++;
+        return false;
+    }
+
+    /**
+     * the second request answered first.
+     */
+    synchronized void hedgeWon() {
+        hedgeWinCount++;
+    }
+
+    @Override
+    public double getDelayMillis() {
+        return getDelayNanos() / 1000000.0;
+    }
+
+    @Override
+    public synchronized long getHedgeableCount() {
+        return hedgeableCount;
+    }
+
+    @Override
+    public synchronized long getHedgeCount() {
+        return hedgeCount;
+    }
+
+    @Override
+    public synchronized long getHedgeWinCount() {
+        return hedgeWinCount;
+    }
+
+    @Override
+    public synchronized long getBudgetExhaustedCount() {
+        return budgetExhaustedCount;
+    }
+}
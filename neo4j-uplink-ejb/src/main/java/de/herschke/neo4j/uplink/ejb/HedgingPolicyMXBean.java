@@ -0,0 +1,36 @@
+package de.herschke.neo4j.uplink.ejb;
+
+/**
+ * the state of the hedging of queries, as exposed via JMX.
+ *
+ * @author rhk
+ */
+public interface HedgingPolicyMXBean {
+
+    /**
+     * @return the milliseconds, a hedged query waits for its first request,
+     * before it is sent a second time
+     */
+    double getDelayMillis();
+
+    /**
+     * @return the count of queries, that were executed with hedging enabled
+     */
+    long getHedgeableCount();
+
+    /**
+     * @return the count of second requests, that were sent
+     */
+    long getHedgeCount();
+
+    /**
+     * @return the count of second requests, that answered before the first
+     */
+    long getHedgeWinCount();
+
+    /**
+     * @return the count of slow queries, that were not hedged, because the
+     * budget was exhausted
+     */
+    long getBudgetExhaustedCount();
+}
@@ -0,0 +1,363 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherRejectedException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * limits the count of requests, that are in flight to the Neo4j Server at the
+ * same time.
+ * <p>
+ * The limit adapts to the server: it starts at the maximum and is decreased
+ * by a quarter, if a request fails with a server error or without a response,
+ * or if it takes longer than the latency threshold. Only one decrease is made
+ * for the requests, that were in flight at the same time. While the limit is
+ * used, each fast response increases it by a fraction, so it grows by about one
+ * per round of requests, up to the maximum again.
+ * <p>
+ * A request, that finds no free slot, waits until the slot timeout, unless the
+ * queue of waiting requests is full. Rejected requests fail with a
+ * {@link CypherRejectedException}, so the callers do not pile up.
+ * <p>
+ * The circuit breaker opens after a count of failed requests in a row and
+ * rejects all requests for the open time. Then a single trial request is let
+ * through, whose success closes the circuit again.
+ *
+ * @author rhk
+ */
+class InFlightRequestLimiter implements InFlightRequestLimiterMXBean {
+
+    private static final Logger LOG = Logger.getLogger(InFlightRequestLimiter.class.getName());
+    private static final double BACKOFF = 0.75;
+
+    private static enum CircuitState {
+
+        CLOSED, OPEN, HALF_OPEN
+    }
+    private final int maxInFlight;
+    private final long acquireTimeoutMillis;
+    private final NanoClock clock;
+    private int minInFlight = 1;
+    private int maxQueued = 0;
+    private long latencyThresholdNanos = 0;
+    private int circuitFailureThreshold = 0;
+    private long circuitOpenNanos = TimeUnit.SECONDS.toNanos(10);
+    private double limit;
+    private int inFlight = 0;
+    private int queued = 0;
+    private long lastDecreaseNanos;
+    private int consecutiveFailures = 0;
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private long circuitOpenedNanos;
+    private boolean trialInFlight = false;
+    private long rejectedCount = 0;
+    private long limitDecreaseCount = 0;
+    private long circuitTripCount = 0;
+
+    /**
+     * a slot for one request, that must be released, when the request is
+     * finished.
+     */
+    class Permit {
+
+        private final long acquiredNanos = clock.nanoTime();
+        private final boolean trial;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private boolean completed = false;
+
+        Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        /**
+         * the server responded or the request failed without a response.
+         * Only the first call is taken into account.
+         *
+         * @param latencyNanos the nanoseconds from sending the request until
+         * the response status was received or the request failed
+         * @param failed true, if the server responded with a server error or
+         * did not respond at all
+         */
+        void completed(long latencyNanos, boolean failed) {
+            LogRecord record = onCompleted(this, latencyNanos, failed);
+            // logging may take long, so it is not done within the monitor
+            if (record != null) {
+                LOG.log(record);
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                onReleased(this);
+            }
+        }
+
+        /**
+         * wraps the given response stream, so the slot is released, when the
+         * stream is closed.
+         */
+        InputStream releaseOnClose(InputStream stream) {
+            return new FilterInputStream(stream) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * @param maxInFlight the maximum count of concurrent requests, a value less
+     * or equal to zero disables the limit
+     * @param acquireTimeoutMillis the time to wait for a free slot, a value
+     * less or equal to zero rejects a request at once, if no slot is free
+     */
+    InFlightRequestLimiter(int maxInFlight, long acquireTimeoutMillis) {
+        this(maxInFlight, acquireTimeoutMillis, NanoClock.SYSTEM);
+    }
+
+    /**
+     * @param clock the clock of the circuit breaker and of the decreases of
+     * the limit
+     */
+    InFlightRequestLimiter(int maxInFlight, long acquireTimeoutMillis, NanoClock clock) {
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.clock = clock;
+        this.limit = maxInFlight;
+        this.lastDecreaseNanos = clock.nanoTime();
+    }
+
+    /**
+     * @param minInFlight the limit is not decreased below this count
+     */
+    void setMinInFlight(int minInFlight) {
+        this.minInFlight = Math.max(1, maxInFlight > 0 ? Math.min(minInFlight, maxInFlight) : minInFlight);
+    }
+
+    /**
+     * @param maxQueued the maximum count of requests, that wait for a free
+     * slot, 0 for no maximum
+     */
+    void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param latencyThresholdMillis responses, that take longer, decrease
+     * the limit, 0 to decrease it on failures only
+     */
+    void setLatencyThreshold(long latencyThresholdMillis) {
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+    }
+
+    /**
+     * @param failureThreshold the count of failed requests in a row, that
+     * open the circuit, 0 disables the circuit breaker
+     * @param openMillis the time, the circuit stays open
+     */
+    void setCircuitBreaker(int failureThreshold, long openMillis) {
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * waits for a free slot.
+     *
+     * @throws CypherRejectedException if the circuit is open, the queue is
+     * full or no slot gets free in time
+     */
+    synchronized Permit acquire() throws CypherException {
+        boolean trial = checkCircuit();
+        try {
+            if (inFlight >= currentLimit()) {
+                if (acquireTimeoutMillis <= 0 || (maxQueued > 0 && queued >= maxQueued)) {
+                    rejectedCount++;
+                    throw new CypherRejectedException(CypherRejectedException.Reason.LIMIT_REACHED, String.format("no free request slot, %d requests are in flight and %d are waiting", inFlight, queued));
+                }
+                awaitSlot(trial);
+            }
+        } catch (CypherException | RuntimeException ex) {
+            if (trial) {
+                trialInFlight = false;
+            }
+            throw ex;
+        }
+        inFlight++;
+        return new Permit(trial);
+    }
+
+    /**
+     * @param trial true, if the request is the trial of a half-open circuit,
+     * other requests are rejected, if the circuit opens while they wait
+     */
+    private void awaitSlot(boolean trial) throws CypherException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        queued++;
+        try {
+            while (inFlight >= currentLimit()) {
+                if (!trial && circuitState != CircuitState.CLOSED) {
+                    rejectedCount++;
+                    throw new CypherRejectedException(CypherRejectedException.Reason.CIRCUIT_OPEN, "the circuit breaker opened, while the request waited for a free slot");
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejectedCount++;
+                    throw new CypherRejectedException(CypherRejectedException.Reason.LIMIT_REACHED, String.format("no free request slot after %d ms, %d requests are in flight", acquireTimeoutMillis, inFlight));
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CypherException("interrupted while waiting for a free request slot", ex);
+        } finally {
+            queued--;
+        }
+    }
+
+    /**
+     * @return true, if the request is the trial of a half-open circuit
+     */
+    private boolean checkCircuit() throws CypherRejectedException {
+        if (circuitState == CircuitState.OPEN) {
+            if (clock.nanoTime() - circuitOpenedNanos < circuitOpenNanos) {
+                rejectedCount++;
+                throw new CypherRejectedException(CypherRejectedException.Reason.CIRCUIT_OPEN, String.format("the circuit breaker is open after %d failed requests in a row", consecutiveFailures));
+            }
+            circuitState = CircuitState.HALF_OPEN;
+        }
+        if (circuitState == CircuitState.HALF_OPEN) {
+            if (trialInFlight) {
+                rejectedCount++;
+                throw new CypherRejectedException(CypherRejectedException.Reason.CIRCUIT_OPEN, "the circuit breaker waits for the result of a trial request");
+            }
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the record to log, if the state of the circuit changed, or null
+     */
+    private synchronized LogRecord onCompleted(Permit permit, long latencyNanos, boolean failed) {
+        if (permit.completed) {
+            return null;
+        }
+        permit.completed = true;
+        boolean congested = failed || (latencyThresholdNanos > 0 && latencyNanos > latencyThresholdNanos);
+        if (maxInFlight > 0) {
+            if (congested) {
+                // the requests in flight with this one saw the same congestion
+                double decreased = Math.max(minInFlight, limit * BACKOFF);
+                if (permit.acquiredNanos - lastDecreaseNanos > 0 && decreased < limit) {
+                    limit = decreased;
+                    lastDecreaseNanos = clock.nanoTime();
+                    limitDecreaseCount++;
+                }
+            } else if (inFlight * 2 >= limit && limit < maxInFlight) {
+                limit = Math.min(maxInFlight, limit + 1.0 / limit);
+                notifyAll();
+            }
+        }
+        LogRecord record = null;
+        if (circuitFailureThreshold > 0) {
+            if (failed) {
+                consecutiveFailures++;
+                if (permit.trial || (circuitState == CircuitState.CLOSED && consecutiveFailures >= circuitFailureThreshold)) {
+                    record = openCircuit();
+                }
+            } else {
+                consecutiveFailures = 0;
+                if (permit.trial) {
+                    circuitState = CircuitState.CLOSED;
+                    record = createRecord(Level.INFO, "the circuit breaker is closed again");
+                }
+            }
+        }
+        if (permit.trial) {
+            trialInFlight = false;
+        }
+        return record;
+    }
+
+    private LogRecord openCircuit() {
+        circuitState = CircuitState.OPEN;
+        circuitOpenedNanos = clock.nanoTime();
+        circuitTripCount++;
+        // the waiting requests are rejected
+        notifyAll();
+        return createRecord(Level.WARNING, "the circuit breaker is open for {0} ms after {1} failed requests in a row", TimeUnit.NANOSECONDS.toMillis(circuitOpenNanos), consecutiveFailures);
+    }
+
+    private static LogRecord createRecord(Level level, String message, Object... parameters) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(LOG.getName());
+        record.setParameters(parameters);
+        return record;
+    }
+
+    private synchronized void onReleased(Permit permit) {
+        inFlight--;
+        if (permit.trial && !permit.completed) {
+            // the trial ended without a result, the next request is the trial
+            trialInFlight = false;
+        }
+        notifyAll();
+    }
+
+    private int currentLimit() {
+        return maxInFlight > 0 ? (int) limit : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return maxInFlight > 0 ? (int) limit : 0;
+    }
+
+    @Override
+    public int getMaxLimit() {
+        return maxInFlight;
+    }
+
+    @Override
+    public synchronized int getInFlightRequests() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized int getQueuedRequests() {
+        return queued;
+    }
+
+    @Override
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized long getLimitDecreaseCount() {
+        return limitDecreaseCount;
+    }
+
+    @Override
+    public synchronized String getCircuitState() {
+        return circuitState.name();
+    }
+
+    @Override
+    public synchronized long getCircuitTripCount() {
+        return circuitTripCount;
+    }
+}
@@ -0,0 +1,52 @@
+package de.herschke.neo4j.uplink.ejb;
+
+/**
+ * the state of the limit of requests in flight and of the circuit breaker, as
+ * exposed via JMX.
+ *
+ * @author rhk
+ */
+public interface InFlightRequestLimiterMXBean {
+
+    /**
+     * @return the current limit of requests in flight, that adapts to the
+     * server, or 0, if there is no limit
+     */
+    int getLimit();
+
+    /**
+     * @return the configured maximum of requests in flight
+     */
+    int getMaxLimit();
+
+    /**
+     * @return the count of requests, that are currently in flight
+     */
+    int getInFlightRequests();
+
+    /**
+     * @return the count of requests, that wait for a free slot
+     */
+    int getQueuedRequests();
+
+    /**
+     * @return the count of requests, that were rejected, because no slot got
+     * free or the circuit was open
+     */
+    long getRejectedCount();
+
+    /**
+     * @return the count of decreases of the limit
+     */
+    long getLimitDecreaseCount();
+
+    /**
+     * @return the state of the circuit breaker: CLOSED, OPEN or HALF_OPEN
+     */
+    String getCircuitState();
+
+    /**
+     * @return the count of times, the circuit breaker opened
+     */
+    long getCircuitTripCount();
+}
@@ -0,0 +1,19 @@
+package de.herschke.neo4j.uplink.ejb;
+
+/**
+ * the source of the time, that is measured in nanoseconds like
+ * {@link System#nanoTime()}. Tests replace it to control the time.
+ *
+ * @author rhk
+ */
+interface NanoClock {
+
+    NanoClock SYSTEM = new NanoClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    long nanoTime();
+}
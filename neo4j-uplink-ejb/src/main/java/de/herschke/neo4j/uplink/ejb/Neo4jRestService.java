@@ -1,135 +1,919 @@
 package de.herschke.neo4j.uplink.ejb;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import de.herschke.neo4j.uplink.api.BulkWriteOptions;
+import de.herschke.neo4j.uplink.api.BulkWriteResult;
+import de.herschke.neo4j.uplink.api.CypherCursor;
 import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherQueryOptions;
 import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.api.CypherStatement;
 import de.herschke.neo4j.uplink.api.Neo4jUplink;
-import de.herschke.neo4j.uplink.ejb.responsehandling.CypherResponseHandler;
+import de.herschke.neo4j.uplink.ejb.cache.ResultCache;
+import de.herschke.neo4j.uplink.ejb.cache.ResultCacheMXBean;
+import de.herschke.neo4j.uplink.ejb.metrics.RequestTrace;
+import de.herschke.neo4j.uplink.ejb.metrics.UplinkMetrics;
+import de.herschke.neo4j.uplink.ejb.metrics.UplinkMetricsMXBean;
+import de.herschke.neo4j.uplink.ejb.requestwriting.JsonRequestEntity;
+import de.herschke.neo4j.uplink.ejb.requestwriting.JsonRequestWriter;
+import de.herschke.neo4j.uplink.ejb.requestwriting.ParameterWriteException;
+import de.herschke.neo4j.uplink.ejb.responsehandling.BeanMappingSink;
+import de.herschke.neo4j.uplink.ejb.responsehandling.CypherBatchResponseHandler;
+import de.herschke.neo4j.uplink.ejb.responsehandling.CypherResponseParser;
+import de.herschke.neo4j.uplink.ejb.responsehandling.CypherResponseParsers;
+import de.herschke.neo4j.uplink.ejb.responsehandling.ResultMappingException;
+import de.herschke.neo4j.uplink.ejb.responsehandling.StreamingCypherCursor;
+import de.herschke.neo4j.uplink.ejb.routing.Endpoint;
+import de.herschke.neo4j.uplink.ejb.routing.EndpointRouter;
+import de.herschke.neo4j.uplink.ejb.routing.EndpointRouterMXBean;
+import de.herschke.neo4j.uplink.ejb.routing.QueryClassifier;
+import de.herschke.neo4j.uplink.ejb.transport.ConnectionPoolStatisticsMXBean;
+import de.herschke.neo4j.uplink.ejb.transport.Transport;
+import de.herschke.neo4j.uplink.ejb.transport.TransportSettings;
+import de.herschke.neo4j.uplink.ejb.transport.Transports;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Local;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import org.json.simple.JSONAware;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONStreamAware;
 import org.json.simple.JSONValue;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
+ * the {@link Neo4jUplink} implementation, that talks to the ReST API of a
+ * Neo4j Server.
+ * <p>
+ * The bean is a singleton, whose business methods may be called concurrently:
+ * all of them are read-locked and share one thread-safe Jersey {@link Client}.
+ * The count of requests in flight to the server is limited by the
+ * {@link InFlightRequestLimiter}: the limit adapts to the latency and the
+ * failures of the server, up to the env-entry 'neo4j-max-concurrent-requests',
+ * and a circuit breaker rejects all requests for a while, if the server fails
+ * repeatedly. Rejected requests fail with a
+ * {@link de.herschke.neo4j.uplink.api.CypherRejectedException}.
+ * <p>
+ * The client is created by the {@link Transport} named in the env-entry
+ * 'neo4j-transport'. By default, connections are kept alive in a pool, whose
+ * statistics are registered as MBean.
+ * <p>
+ * The latencies of the phases of each request, the transferred bytes and rows
+ * and the errors are collected in {@link UplinkMetrics}, that are registered
+ * as MBean, too. Slow queries are logged, if the env-entry
+ * 'neo4j-slow-query-threshold' is set.
+ * <p>
+ * Responses of queries are parsed by the {@link CypherResponseParser} named in
+ * the env-entry 'neo4j-response-parser'. The rows of typed queries are mapped
+ * onto objects by a {@link BeanMappingSink} while they are parsed.
+ * <p>
+ * If the env-entry 'neo4j-response-compression' is true, the server is asked
+ * to send gzip compressed responses, that are decompressed while they are
+ * parsed. Request bodies larger than the env-entry
+ * 'neo4j-request-compression-threshold' are sent gzip compressed, if it is
+ * greater than zero, see {@link JsonRequestEntity#compressIfLargerThan(int)}.
+ * <p>
+ * Modifying requests are sent to 'neo4j-server-url', the master. If the
+ * env-entry 'neo4j-replica-urls' lists read replicas, queries, that do not
+ * modify the graph, are spread across them by the {@link EndpointRouter}. All
+ * endpoints are health-checked every 'neo4j-health-check-interval'
+ * milliseconds, so failed replicas are ejected and restored.
+ * <p>
+ * Read queries with the option {@link CypherQueryOptions#isHedged()} are sent
+ * a second time, if the first request did not answer within the usual latency,
+ * see {@link HedgingPolicy}. Both requests are executed by the hedge pool of
+ * the bean, that the caller waits for, the slower request is cancelled.
+ * <p>
+ * Bulk writes are split into chunks, that are sent concurrently by the worker
+ * pool, see {@link BulkWriter}. Both pools have 'neo4j-worker-threads'
+ * threads, so bulk writes do not delay hedged queries.
+ * <p>
+ * If the env-entry 'neo4j-result-cache-size' is greater than zero, the
+ * results of queries are cached, see {@link ResultCache}.
+ * <p>
+ * The asynchronous variants are executed by the asynchronous invocation pool
+ * of the container, so the response is parsed on a container thread.
  *
  * @author rhk
  */
 @Singleton
 @Local(Neo4jUplink.class)
+@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@Lock(LockType.READ)
 public class Neo4jRestService implements Neo4jUplink {
 
+    private static final Logger LOG = Logger.getLogger(Neo4jRestService.class.getName());
+    private static final String EVICT_IDLE_CONNECTIONS = "evict-idle-connections";
+    private static final String CHECK_HEALTH = "check-health";
+    /**
+     * the count of consecutive connection failures, that eject an endpoint.
+     */
+    private static final int ENDPOINT_FAILURE_THRESHOLD = 3;
+    private static final String CONNECTION_FAILED = "connection";
+    private static final String UNPARSEABLE = "unparseable";
+    private static final String UNWRITABLE = "unwritable";
+    private static final String UNMAPPABLE = "unmappable";
+    private static final String FAILED_BATCH_STATEMENT = "batch-statement";
+    private static final String CANCELLED = "cancelled";
+    private static final String GZIP = "gzip";
+    private static final int DECOMPRESSION_BUFFER_SIZE = 8192;
+    private static final CypherQueryOptions DEFAULT_OPTIONS = new CypherQueryOptions();
+
     @Resource(name = "neo4j-server-url")
     String neo4jURL;
-    private Client client = Client.create();
-    private WebResource clientResource;
+    @Resource(name = "neo4j-replica-urls")
+    String replicaURLs = "";
+    @Resource(name = "neo4j-health-check-interval")
+    long healthCheckInterval = 5000;
+    @Resource(name = "neo4j-health-check-timeout")
+    int healthCheckTimeout = 2000;
+    @Resource(name = "neo4j-max-concurrent-requests")
+    int maxConcurrentRequests = 16;
+    @Resource(name = "neo4j-request-slot-timeout")
+    long requestSlotTimeout = 30000;
+    @Resource(name = "neo4j-min-concurrent-requests")
+    int minConcurrentRequests = 1;
+    @Resource(name = "neo4j-max-queued-requests")
+    int maxQueuedRequests = 0;
+    @Resource(name = "neo4j-limit-latency-threshold")
+    long limitLatencyThreshold = 0;
+    @Resource(name = "neo4j-circuit-breaker-failures")
+    int circuitBreakerFailures = 5;
+    @Resource(name = "neo4j-circuit-breaker-open-time")
+    long circuitBreakerOpenTime = 10000;
+    @Resource(name = "neo4j-hedge-budget")
+    double hedgeBudget = 0.05;
+    @Resource(name = "neo4j-hedge-delay-percentile")
+    double hedgeDelayPercentile = 0.95;
+    @Resource(name = "neo4j-hedge-min-delay")
+    long hedgeMinDelay = 5;
+    @Resource(name = "neo4j-worker-threads")
+    int workerThreads = 8;
+    @Resource(name = "neo4j-transport")
+    String transportName = Transports.POOLED;
+    @Resource(name = "neo4j-pool-max-connections")
+    int poolMaxConnections = 32;
+    @Resource(name = "neo4j-pool-max-connections-per-route")
+    int poolMaxConnectionsPerRoute = 16;
+    @Resource(name = "neo4j-pool-idle-timeout")
+    long poolIdleTimeout = 60000;
+    @Resource(name = "neo4j-connect-timeout")
+    int connectTimeout = 5000;
+    @Resource(name = "neo4j-read-timeout")
+    int readTimeout = 0;
+    @Resource(name = "neo4j-response-parser")
+    String responseParserName = CypherResponseParsers.JSON_SIMPLE;
+    @Resource(name = "neo4j-response-compression")
+    boolean responseCompression = false;
+    @Resource(name = "neo4j-request-compression-threshold")
+    int requestCompressionThreshold = 0;
+    @Resource(name = "neo4j-slow-query-threshold")
+    long slowQueryThreshold = 0;
+    @Resource(name = "neo4j-slow-query-sample-rate")
+    double slowQuerySampleRate = 1.0;
+    @Resource(name = "neo4j-result-cache-size")
+    int resultCacheSize = 0;
+    @Resource(name = "neo4j-result-cache-ttl")
+    long resultCacheTimeToLive = 10000;
+    @Resource(name = "neo4j-result-cache-by-default")
+    boolean resultCacheByDefault = false;
+    @Resource(name = "neo4j-result-cache-serialized")
+    boolean resultCacheSerialized = false;
+    @Resource
+    TimerService timerService;
+    Transport transport;
+    private Client client;
+    private EndpointRouter router;
+    private InFlightRequestLimiter limiter;
+    private HedgingPolicy hedging;
+    private ExecutorService workerExecutor;
+    private ExecutorService hedgeExecutor;
+    private ExecutorService healthCheckExecutor;
+    private UplinkMetrics metrics;
+    private ResultCache resultCache;
+    private final List<ObjectName> registeredMBeans = new ArrayList<>();
 
     @PostConstruct
     void init() {
         if (neo4jURL == null || neo4jURL.trim().length() == 0) {
             throw new IllegalArgumentException("Env-Entry 'neo4j-server-url' must be specified in the format http://host:port/db/data!");
         }
+        TransportSettings settings = new TransportSettings();
+        settings.setMaxConnections(poolMaxConnections);
+        settings.setMaxConnectionsPerRoute(poolMaxConnectionsPerRoute);
+        settings.setIdleTimeout(poolIdleTimeout);
+        settings.setConnectTimeout(connectTimeout);
+        settings.setReadTimeout(readTimeout);
+        // fail early on an unknown parser
+        CypherResponseParsers.create(responseParserName);
+        transport = Transports.create(transportName);
+        client = transport.createClient(settings);
         client.setFollowRedirects(true);
-        clientResource = client.resource(neo4jURL);
+        int failureThreshold = healthCheckInterval > 0 ? ENDPOINT_FAILURE_THRESHOLD : 0;
+        List<Endpoint> replicas = new ArrayList<>();
+        if (replicaURLs != null) {
+            for (String replicaURL : replicaURLs.split("[,\\s]+")) {
+                if (!replicaURL.isEmpty()) {
+                    replicas.add(new Endpoint(replicaURL, client, healthCheckTimeout, failureThreshold, true));
+                }
+            }
+        }
+        if (!replicas.isEmpty()) {
+            // one thread per endpoint, so the health checks run concurrently
+            healthCheckExecutor = createWorkerPool(replicas.size() + 1, "neo4j-uplink-health-check-");
+        }
+        // the master is the only endpoint of modifying requests, so failed
+        // requests never eject it
+        router = new EndpointRouter(new Endpoint(neo4jURL, client, healthCheckTimeout, 0), replicas, healthCheckExecutor);
+        limiter = new InFlightRequestLimiter(maxConcurrentRequests, requestSlotTimeout);
+        limiter.setMinInFlight(minConcurrentRequests);
+        limiter.setMaxQueued(maxQueuedRequests);
+        limiter.setLatencyThreshold(limitLatencyThreshold);
+        limiter.setCircuitBreaker(circuitBreakerFailures, circuitBreakerOpenTime);
+        registerMBean("RequestLimiter", limiter, InFlightRequestLimiterMXBean.class);
+        workerExecutor = createWorkerPool(workerThreads, "neo4j-uplink-worker-");
+        if (hedgeBudget > 0) {
+            // hedged queries must not wait behind the chunks of bulk writes
+            hedgeExecutor = createWorkerPool(workerThreads, "neo4j-uplink-hedge-");
+            hedging = new HedgingPolicy(hedgeBudget, hedgeDelayPercentile, hedgeMinDelay);
+            registerMBean("Hedging", hedging, HedgingPolicyMXBean.class);
+        }
+        metrics = new UplinkMetrics(slowQueryThreshold, slowQuerySampleRate);
+        registerMBean("Metrics", metrics, UplinkMetricsMXBean.class);
+        if (resultCacheSize > 0) {
+            resultCache = new ResultCache(resultCacheSize, resultCacheTimeToLive, resultCacheByDefault, resultCacheSerialized);
+            registerMBean("ResultCache", resultCache, ResultCacheMXBean.class);
+        }
+        if (transport.getPoolStatistics() != null) {
+            registerMBean("ConnectionPool", transport.getPoolStatistics(), ConnectionPoolStatisticsMXBean.class);
+        }
+        if (!replicas.isEmpty()) {
+            registerMBean("Routing", router, EndpointRouterMXBean.class);
+        }
+        if (timerService != null && poolIdleTimeout > 0) {
+            timerService.createIntervalTimer(poolIdleTimeout, poolIdleTimeout, new TimerConfig(EVICT_IDLE_CONNECTIONS, false));
+        }
+        if (timerService != null && healthCheckInterval > 0 && !replicas.isEmpty()) {
+            timerService.createIntervalTimer(healthCheckInterval, healthCheckInterval, new TimerConfig(CHECK_HEALTH, false));
+        }
+    }
+
+    @PreDestroy
+    void destroy() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredMBeans) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException | MBeanRegistrationException ex) {
+                LOG.log(Level.FINE, "cannot unregister MBean: " + name, ex);
+            }
+        }
+        registeredMBeans.clear();
+        workerExecutor.shutdownNow();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+        }
+        client.destroy();
+        transport.shutdown();
+    }
+
+    @Timeout
+    void onTimeout(Timer timer) {
+        if (EVICT_IDLE_CONNECTIONS.equals(timer.getInfo())) {
+            transport.evictIdleConnections();
+        } else if (CHECK_HEALTH.equals(timer.getInfo())) {
+            router.checkHealth();
+        }
+    }
+
+    /**
+     * creates a pool of the given count of threads. Idle workers are
+     * discarded after a minute, so the pool costs nothing, if it is not used.
+     * More tasks than workers wait in the queue.
+     */
+    private ExecutorService createWorkerPool(int threads, final String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private <T> void registerMBean(String type, T mbean, Class<T> mbeanInterface) {
+        try {
+            ObjectName name = new ObjectName(String.format("de.herschke.neo4j.uplink:type=%s,url=%s", type, ObjectName.quote(neo4jURL)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(mbean, mbeanInterface, true), name);
+            registeredMBeans.add(name);
+        } catch (JMException ex) {
+            LOG.log(Level.WARNING, "cannot register MBean for " + type, ex);
+        }
     }
 
     @Override
     public boolean createNodeIndex(String name, Map<String, Object> config) throws CypherException {
-        ClientResponse response = clientResource.path("index/node").accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON).post(ClientResponse.class, buildIndexRequest(name, config));
-        return response.getClientResponseStatus() == ClientResponse.Status.CREATED;
+        InFlightRequestLimiter.Permit permit = limiter.acquire();
+        Endpoint endpoint = router.select(false);
+        endpoint.acquire();
+        RequestTrace trace = metrics.start("create node index " + name);
+        try {
+            ClientResponse response = post(endpoint, permit, jsonRequest(endpoint, "index/node"), JsonRequestEntity.value(buildIndexRequest(name, config)), trace);
+            response.close();
+            if (response.getStatus() >= 400) {
+                trace.failed(String.valueOf(response.getStatus()));
+            }
+            return response.getClientResponseStatus() == ClientResponse.Status.CREATED;
+        } finally {
+            trace.finish();
+            endpoint.release();
+            permit.release();
+        }
     }
 
     @Override
     public CypherResult executeCypherQuery(String query, Map<String, Object> params) throws CypherException {
-        ClientResponse response = clientResource.path("cypher").accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON).post(ClientResponse.class, buildCypherRequest(query, params));
+        return executeCypherQuery(query, params, DEFAULT_OPTIONS);
+    }
+
+    @Override
+    public CypherResult executeCypherQuery(String query, Map<String, Object> params, CypherQueryOptions options) throws CypherException {
+        if (options == null) {
+            options = DEFAULT_OPTIONS;
+        }
+        if (resultCache != null && resultCache.isCacheable(query, options)) {
+            ResultCache.Key cacheKey = resultCache.createKey(query, JsonRequestWriter.toCanonicalParams(params), options);
+            CypherResult result = resultCache.get(cacheKey);
+            if (result == null) {
+                result = resultCache.put(cacheKey, executeCypherRequest(query, params, options), options.getCacheTimeToLive());
+            }
+            return result;
+        }
+        return executeCypherRequest(query, params, options);
+    }
+
+    private CypherResult executeCypherRequest(String query, Map<String, Object> params, CypherQueryOptions options) throws CypherException {
+        boolean read = isRead(query, options);
+        if (read && options.isHedged() && hedging != null) {
+            return executeHedgedRequest(query, params, options);
+        }
+        return executeCypherRequest(query, params, options, read, null);
+    }
+
+    /**
+     * @param attempt the attempt of a hedged query, that may be cancelled, or
+     * null
+     */
+    private CypherResult executeCypherRequest(String query, Map<String, Object> params, CypherQueryOptions options, boolean read, HedgedAttempt attempt) throws CypherException {
+        if (attempt != null && attempt.isCancelled()) {
+            throw new CypherException("the hedged request was cancelled");
+        }
+        InFlightRequestLimiter.Permit permit = limiter.acquire();
+        if (attempt != null && attempt.isCancelled()) {
+            // the other request won, while this one waited for a slot
+            permit.release();
+            throw new CypherException("the hedged request was cancelled");
+        }
+        Endpoint endpoint = router.select(read);
+        endpoint.acquire();
+        RequestTrace trace = metrics.start(query);
+        long start = System.nanoTime();
+        try {
+            if (attempt != null && attempt.isCancelled()) {
+                trace.failed(CANCELLED);
+                throw new CypherException("the hedged request was cancelled");
+            }
+            ClientResponse response = postCypherRequest(endpoint, permit, query, params, trace);
+            CypherResult result = null;
+            try {
+                if (attempt != null && !attempt.responded(response)) {
+                    trace.failed(CANCELLED);
+                    throw new CypherException("the hedged request was cancelled");
+                }
+                result = parseCypherResponse(decodeResponse(response, trace.countResponse(response.getEntityInputStream())), options, trace);
+                if (read && hedging != null) {
+                    hedging.recordLatency(System.nanoTime() - start);
+                }
+                if (attempt != null) {
+                    attempt.succeeded();
+                }
+                return result;
+            } catch (IOException | ParseException ex) {
+                if (attempt != null && attempt.isCancelled()) {
+                    trace.failed(CANCELLED);
+                    throw new CypherException("the hedged request was cancelled", ex);
+                }
+                trace.failed(UNPARSEABLE);
+                throw new CypherException("an unparseable response was retrieved: " + ex.getMessage(), ex);
+            } finally {
+                // the response of a cancelled attempt is already aborted
+                if (attempt == null || attempt.finished()) {
+                    if (result != null && result.isTruncated()) {
+                        // closing would drain the rest of the rows from the connection
+                        transport.abort(response);
+                    } else {
+                        response.close();
+                    }
+                }
+            }
+        } finally {
+            trace.finish();
+            endpoint.release();
+            permit.release();
+        }
+    }
+
+    @Override
+    public <T> List<T> executeCypherQuery(String query, Map<String, Object> params, Class<T> type) throws CypherException {
+        return executeCypherQuery(query, params, DEFAULT_OPTIONS, type);
+    }
 
-        if (response.getClientResponseStatus().equals(ClientResponse.Status.OK)) {
+    @Override
+    public <T> List<T> executeCypherQuery(String query, Map<String, Object> params, CypherQueryOptions options, Class<T> type) throws CypherException {
+        if (options == null) {
+            options = DEFAULT_OPTIONS;
+        }
+        InFlightRequestLimiter.Permit permit = limiter.acquire();
+        Endpoint endpoint = router.select(isRead(query, options));
+        endpoint.acquire();
+        RequestTrace trace = metrics.start(query);
+        try {
+            ClientResponse response = postCypherRequest(endpoint, permit, query, params, trace);
+            boolean complete = false;
             try {
-                return parseCypherResponse(response.getEntityInputStream());
+                // the rows are mapped while they are parsed, no result is built
+                BeanMappingSink<T> sink = new BeanMappingSink<>(type);
+                CypherResponseParser parser = createParser(options);
+                complete = !parser.parse(decodeResponse(response, trace.countResponse(response.getEntityInputStream())), sink);
+                trace.parsed(sink.getResults().size(), parser.getMaterializeNanos());
+                return sink.getResults();
+            } catch (ResultMappingException ex) {
+                trace.failed(UNMAPPABLE);
+                throw ex.getCause();
             } catch (IOException | ParseException ex) {
+                trace.failed(UNPARSEABLE);
                 throw new CypherException("an unparseable response was retrieved: " + ex.getMessage(), ex);
+            } finally {
+                if (complete) {
+                    response.close();
+                } else {
+                    // closing would drain the rest of the rows from the connection
+                    transport.abort(response);
+                }
+            }
+        } finally {
+            trace.finish();
+            endpoint.release();
+            permit.release();
+        }
+    }
+
+    @Override
+    public BulkWriteResult executeCypherBulkWrite(String query, Iterable<?> rows) throws CypherException {
+        return executeCypherBulkWrite(query, rows.iterator(), new BulkWriteOptions());
+    }
+
+    @Override
+    public BulkWriteResult executeCypherBulkWrite(final String query, Iterator<?> rows, final BulkWriteOptions options) throws CypherException {
+        final CypherQueryOptions chunkOptions = CypherQueryOptions.uncached();
+        // the rows of a chunk are written by the bean accessors, while the request is sent
+        BulkWriter writer = new BulkWriter(workerExecutor, new BulkWriter.ChunkWriter() {
+            @Override
+            public void write(List<Object> chunk) throws CypherException {
+                Map<String, Object> params = new HashMap<>(options.getParams());
+                params.put(options.getRowsParameter(), chunk);
+                executeCypherRequest(query, params, chunkOptions, false, null);
+            }
+        }, options);
+        return writer.write(rows);
+    }
+
+    /**
+     * sends the query and, if it did not answer within the delay of the
+     * {@link HedgingPolicy}, sends it a second time. The first result is
+     * returned, the other request is cancelled. If both fail, the failure of
+     * the first is thrown.
+     */
+    private CypherResult executeHedgedRequest(String query, Map<String, Object> params, CypherQueryOptions options) throws CypherException {
+        hedging.hedgeable();
+        CompletionService<HedgedAttempt> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        List<HedgedAttempt> started = new CopyOnWriteArrayList<>();
+        HedgedAttempt primary = new HedgedAttempt(query, params, options, started);
+        started.add(primary);
+        primary.future = attempts.submit(primary);
+        try {
+            Future<HedgedAttempt> done = attempts.poll(hedging.getDelayNanos(), TimeUnit.NANOSECONDS);
+            if (done == null && hedging.tryHedge()) {
+                HedgedAttempt hedge = new HedgedAttempt(query, params, options, started);
+                started.add(hedge);
+                hedge.future = attempts.submit(hedge);
+            }
+            Throwable failure = null;
+            for (int pending = started.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = attempts.take();
+                }
+                try {
+                    HedgedAttempt winner = done.get();
+                    if (winner != primary) {
+                        hedging.hedgeWon();
+                    }
+                    return winner.result;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                } catch (CancellationException ex) {
+                    // cancelled by the other attempt, that succeeded
+                }
+                done = null;
+            }
+            if (failure instanceof CypherException) {
+                throw (CypherException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new CypherException("the hedged query failed: " + failure, failure);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CypherException("interrupted while waiting for the result of a hedged query", ex);
+        } finally {
+            for (HedgedAttempt attempt : started) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    /**
+     * one request of a hedged query, that is executed by the hedge executor.
+     */
+    private class HedgedAttempt implements Callable<HedgedAttempt> {
+
+        private final String query;
+        private final Map<String, Object> params;
+        private final CypherQueryOptions options;
+        private final List<HedgedAttempt> attempts;
+        private ClientResponse response;
+        private boolean cancelled = false;
+        private boolean finished = false;
+        private CypherResult result;
+        private volatile Future<HedgedAttempt> future;
+
+        HedgedAttempt(String query, Map<String, Object> params, CypherQueryOptions options, List<HedgedAttempt> attempts) {
+            this.query = query;
+            this.params = params;
+            this.options = options;
+            this.attempts = attempts;
+        }
+
+        @Override
+        public HedgedAttempt call() throws CypherException {
+            result = executeCypherRequest(query, params, options, true, this);
+            return this;
+        }
+
+        /**
+         * @return false, if the attempt was cancelled before the response was
+         * received, so the response must not be read
+         */
+        synchronized boolean responded(ClientResponse response) {
+            if (cancelled) {
+                transport.abort(response);
+                finished = true;
+                return false;
+            }
+            this.response = response;
+            return true;
+        }
+
+        /**
+         * cancels the other attempts, before the request slot of this one is
+         * released, so an attempt, that waits for the slot, does not take it.
+         */
+        void succeeded() {
+            for (HedgedAttempt attempt : attempts) {
+                if (attempt != this) {
+                    attempt.cancel();
+                }
+            }
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * the response is closed by the attempt.
+         *
+         * @return false, if the attempt was cancelled and its response is
+         * already aborted
+         */
+        synchronized boolean finished() {
+            boolean aborted = finished;
+            finished = true;
+            response = null;
+            return !aborted;
+        }
+
+        /**
+         * removes the attempt from the queue of the executor, if it has not
+         * started yet, and aborts the response, if it is read, so the parser
+         * fails at once. An attempt, that waits for a request slot, does not
+         * send its request.
+         */
+        synchronized void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (!finished) {
+                cancelled = true;
+                if (response != null) {
+                    transport.abort(response);
+                    finished = true;
+                    response = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public CypherCursor openCypherCursor(String query, Map<String, Object> params) throws CypherException {
+        InFlightRequestLimiter.Permit permit = limiter.acquire();
+        Endpoint endpoint = router.select(isRead(query, DEFAULT_OPTIONS));
+        endpoint.acquire();
+        RequestTrace trace = metrics.start(query);
+        final ClientResponse response;
+        try {
+            response = postCypherRequest(endpoint, permit, query, params, trace);
+        } catch (CypherException | RuntimeException ex) {
+            trace.finish();
+            endpoint.release();
+            permit.release();
+            throw ex;
+        }
+        // the slot is released, when the cursor closes the response stream
+        InputStream stream = permit.releaseOnClose(endpoint.releaseOnClose(trace.finishOnClose(trace.countResponse(response.getEntityInputStream()))));
+        try {
+            return new StreamingCypherCursor(decodeResponse(response, stream), new Runnable() {
+                @Override
+                public void run() {
+                    transport.abort(response);
+                }
+            });
+        } catch (IOException ex) {
+            trace.failed(UNPARSEABLE);
+            closeQuietly(stream);
+            throw new CypherException("an unreadable response was retrieved: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public List<CypherResult> executeCypherBatch(List<CypherStatement> statements) throws CypherException {
+        if (statements.isEmpty()) {
+            return new ArrayList<>();
+        }
+        InFlightRequestLimiter.Permit permit = limiter.acquire();
+        // a batch is executed in one transaction, so it is sent to the master
+        Endpoint endpoint = router.select(false);
+        endpoint.acquire();
+        RequestTrace trace = metrics.start(String.format("batch of %d statements, first: %s", statements.size(), statements.get(0).getQuery()));
+        try {
+            ClientResponse response = checkCypherResponse(post(endpoint, permit, jsonRequest(endpoint, "batch").header("X-Stream", "true"), JsonRequestEntity.batchRequest(statements), trace), trace);
+            try {
+                CypherBatchResponseHandler handler = new CypherBatchResponseHandler(statements.size());
+                new JSONParser().parse(new InputStreamReader(decodeResponse(response, trace.countResponse(response.getEntityInputStream())), "UTF-8"), handler);
+                List<CypherResult> results;
+                try {
+                    results = handler.getResults();
+                } catch (CypherException ex) {
+                    trace.failed(FAILED_BATCH_STATEMENT);
+                    throw ex;
+                }
+                int rows = 0;
+                for (CypherResult result : results) {
+                    rows += result.getRowCount();
+                }
+                trace.parsed(rows, handler.getMaterializeNanos());
+                return results;
+            } catch (IOException | ParseException ex) {
+                trace.failed(UNPARSEABLE);
+                throw new CypherException("an unparseable response was retrieved: " + ex.getMessage(), ex);
+            } finally {
+                response.close();
+            }
+        } finally {
+            trace.finish();
+            endpoint.release();
+            permit.release();
+        }
+    }
+
+    @Override
+    public void invalidateCachedResults() {
+        if (resultCache != null) {
+            resultCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void invalidateCachedResults(String query) {
+        if (resultCache != null) {
+            resultCache.invalidate(query);
+        }
+    }
+
+    @Override
+    @Asynchronous
+    public Future<Boolean> createNodeIndexAsync(String name, Map<String, Object> config) throws CypherException {
+        return new AsyncResult<>(createNodeIndex(name, config));
+    }
+
+    @Override
+    @Asynchronous
+    public Future<CypherResult> executeCypherQueryAsync(String query, Map<String, Object> params) throws CypherException {
+        return new AsyncResult<>(executeCypherQuery(query, params));
+    }
+
+    private void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            // ignore, the stream is discarded anyway
+        }
+    }
+
+    /**
+     * @return true, if the query is sent to a read replica
+     */
+    private boolean isRead(String query, CypherQueryOptions options) {
+        switch (options.getRouting()) {
+            case MASTER:
+                return false;
+            case REPLICA:
+                return true;
+            default:
+                return QueryClassifier.isReadOnly(query);
+        }
+    }
+
+    private WebResource.Builder jsonRequest(Endpoint endpoint, String path) {
+        WebResource.Builder request = endpoint.getResource().path(path).accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON);
+        return responseCompression ? request.header(HttpHeaders.ACCEPT_ENCODING, GZIP) : request;
+    }
+
+    /**
+     * @return the stream of the response body, that is decompressed, if the
+     * server compressed it
+     */
+    private InputStream decodeResponse(ClientResponse response, InputStream stream) throws IOException {
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        return GZIP.equalsIgnoreCase(encoding) ? new GZIPInputStream(stream, DECOMPRESSION_BUFFER_SIZE) : stream;
+    }
+
+    private ClientResponse post(Endpoint endpoint, InFlightRequestLimiter.Permit permit, WebResource.Builder request, JsonRequestEntity entity, RequestTrace trace) throws CypherException {
+        if (requestCompressionThreshold > 0) {
+            try {
+                if (entity.compressIfLargerThan(requestCompressionThreshold)) {
+                    request = request.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+                }
+            } catch (CypherException ex) {
+                trace.failed(UNWRITABLE);
+                throw ex;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            ClientResponse response = request.post(ClientResponse.class, entity);
+            long nanos = System.nanoTime() - start;
+            endpoint.responded(nanos);
+            permit.completed(nanos, response.getStatus() >= 500);
+            trace.requestWritten(entity.getWrittenBytes(), entity.getWriteNanos());
+            trace.responded();
+            return response;
+        } catch (ClientHandlerException ex) {
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof ParameterWriteException) {
+                    trace.failed(UNWRITABLE);
+                    throw ((ParameterWriteException) cause).getCause();
+                }
+            }
+            trace.failed(CONNECTION_FAILED);
+            endpoint.failed();
+            permit.completed(System.nanoTime() - start, true);
+            throw ex;
+        }
+    }
+
+    private ClientResponse postCypherRequest(Endpoint endpoint, InFlightRequestLimiter.Permit permit, String query, Map<String, Object> params, RequestTrace trace) throws CypherException {
+        return checkCypherResponse(post(endpoint, permit, jsonRequest(endpoint, "cypher"), JsonRequestEntity.cypherRequest(query, params), trace), trace);
+    }
+
+    private ClientResponse checkCypherResponse(ClientResponse response, RequestTrace trace) throws CypherException {
+        if (response.getClientResponseStatus() == ClientResponse.Status.OK) {
+            return response;
+        }
+        trace.failed(String.valueOf(response.getStatus()));
+        if (response.getClientResponseStatus() == ClientResponse.Status.BAD_REQUEST) {
+            try {
+                throw parseCypherError(response);
+            } finally {
+                response.close();
             }
-        } else if (response.getClientResponseStatus().equals(ClientResponse.Status.BAD_REQUEST)) {
-            throw parseCypherError(response);
         } else {
+            response.close();
             throw new CypherException(String.format("call to Neo4j Server result in response with status: %s reason: %s%n%s%n", response.getClientResponseStatus(), response.getClientResponseStatus().getReasonPhrase(), response));
         }
     }
 
-    private String buildIndexRequest(String indexName, Map<String, Object> config) {
+    private JSONObject buildIndexRequest(String indexName, Map<String, Object> config) {
         JSONObject indexRequest = new JSONObject();
         indexRequest.put("name", indexName);
         indexRequest.put("config", config);
-        return indexRequest.toJSONString();
+        return indexRequest;
     }
 
-    private String buildCypherRequest(String query, Map<String, Object> params) throws CypherException {
-        JSONObject cypherRequest = new JSONObject();
-        cypherRequest.put("query", query);
-        Map<String, Object> _params = new HashMap<>();
-        for (Entry<String, Object> entry : params.entrySet()) {
-            toJSONObject(_params, entry.getKey(), entry.getValue());
-        }
-        cypherRequest.put("params", _params);
-        System.out.println(">>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
-        System.out.println(cypherRequest.toJSONString());
-        System.out.println(">>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
-        return cypherRequest.toJSONString();
+    private CypherResponseParser createParser(CypherQueryOptions options) {
+        CypherResponseParser parser = CypherResponseParsers.create(responseParserName);
+        parser.setColumns(options.getColumns());
+        parser.setMaxRows(options.getMaxRows());
+        return parser;
     }
 
-    private CypherResult parseCypherResponse(InputStream eis) throws ParseException, IOException {
-        final CypherResponseHandler handler = new CypherResponseHandler();
-        JSONParser parser = new JSONParser();
-        parser.parse(new InputStreamReader(eis, "UTF-8"), handler);
-        return handler.getResult();
+    private CypherResult parseCypherResponse(InputStream eis, CypherQueryOptions options, RequestTrace trace) throws ParseException, IOException {
+        CypherResponseParser parser = createParser(options);
+        CypherResult result = parser.parse(eis);
+        trace.parsed(result == null ? 0 : result.getRowCount(), parser.getMaterializeNanos());
+        return result;
     }
 
     private CypherException parseCypherError(ClientResponse response) {
-        JSONObject result = (JSONObject) JSONValue.parse(response.getEntity(String.class));
+        JSONObject result;
+        try (Reader reader = new InputStreamReader(decodeResponse(response, response.getEntityInputStream()), "UTF-8")) {
+            result = (JSONObject) JSONValue.parse(reader);
+        } catch (IOException ex) {
+            result = null;
+        }
         if (result != null) {
             return new CypherException(String.format("Cypher-Exception: %s(%s)", result.get("exception"), result.get("message")));
         } else {
             return new CypherException("caught a Cypher-Exception without an exception entity");
         }
     }
-
-    private void toJSONObject(Map<String, Object> params, String prefix, Object value) throws CypherException {
-        if (value == null || value instanceof String || value instanceof Double || value instanceof Float || value instanceof Number || value instanceof Boolean || value instanceof JSONStreamAware || value instanceof JSONAware || value instanceof Map || value instanceof List) {
-            params.put(prefix, value);
-        } else if (value instanceof Class) {
-            params.put(prefix, ((Class) value).getSimpleName());
-        } else {
-            try {
-                JSONObject object = new JSONObject();
-                for (Method method : value.getClass().getMethods()) {
-                    if (!"getClass".equals(method.getName()) && (method.getName().startsWith("get") || method.getName().startsWith("is")) && method.getParameterTypes().length == 0 && method.getReturnType() != void.class) {
-                        String name = method.getName().startsWith("get") ? (method.getName().substring(3, 4).toLowerCase() + method.getName().substring(4)) : (method.getName().substring(2, 3).toLowerCase() + method.getName().substring(3));
-                        final Object newValue = method.invoke(value);
-                        toJSONObject(params, prefix + "." + name, newValue);
-                        object.put(name, newValue);
-                    }
-                }
-                params.put(prefix, object);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                throw new CypherException(String.format("cannot build cypher-query, due to: %s(%s)", ex.getClass().getSimpleName(), ex.getMessage()), ex);
-            }
-        }
-    }
 }
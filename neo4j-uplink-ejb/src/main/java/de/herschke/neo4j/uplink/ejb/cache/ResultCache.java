@@ -0,0 +1,315 @@
+package de.herschke.neo4j.uplink.ejb.cache;
+
+import de.herschke.neo4j.uplink.api.CypherQueryOptions;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.ejb.requestwriting.JsonRequestWriter;
+import de.herschke.neo4j.uplink.ejb.routing.QueryClassifier;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a cache of cypher results, that evicts the least recently used result, if
+ * the maximum size is reached, and results, whose time to live is over.
+ * <p>
+ * The results are keyed on the query, whose whitespace is normalized, the
+ * parameters in canonical form, as written by
+ * {@link JsonRequestWriter#toCanonicalParams(java.util.Map)}, the columns,
+ * the result is restricted to, and the maximum count of rows. Optionally, the
+ * results are kept in serialized form, so each hit returns a copy and the
+ * cache takes less heap.
+ *
+ * @author rhk
+ */
+public class ResultCache implements ResultCacheMXBean {
+
+    private static final Logger LOG = Logger.getLogger(ResultCache.class.getName());
+
+    /**
+     * the key of a cached result.
+     */
+    public static final class Key {
+
+        private final String query;
+        private final String params;
+        private final Set<String> columns;
+        private final int maxRows;
+        private final int hash;
+
+        Key(String query, String params, Set<String> columns, int maxRows) {
+            this.query = query;
+            this.params = params;
+            this.columns = columns;
+            this.maxRows = maxRows;
+            this.hash = 31 * (31 * (31 * query.hashCode() + params.hashCode()) + (columns == null ? 0 : columns.hashCode())) + maxRows;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && maxRows == other.maxRows && query.equals(other.query) && params.equals(other.params)
+                    && (columns == null ? other.columns == null : columns.equals(other.columns));
+        }
+
+        @Override
+        public String toString() {
+            return query + " " + params + (columns == null ? "" : " " + columns) + (maxRows == 0 ? "" : " maxRows=" + maxRows);
+        }
+    }
+
+    private static class Entry {
+
+        private final Object value;
+        private final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+    private final int maxSize;
+    private final long defaultTimeToLive;
+    private final boolean defaultEnabled;
+    private final boolean serialized;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expiredCount;
+
+    /**
+     * @param maxSize the maximum count of cached results
+     * @param defaultTimeToLive the milliseconds, a result is valid, if the
+     * query options do not specify it
+     * @param defaultEnabled true, if the results of all queries, that do not
+     * modify the graph, are cached, false if only the queries, whose options
+     * enable caching, are cached.
+     * @param serialized true, if the results should be kept in serialized form
+     */
+    public ResultCache(int maxSize, long defaultTimeToLive, boolean defaultEnabled, boolean serialized) {
+        this.maxSize = maxSize;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.defaultEnabled = defaultEnabled;
+        this.serialized = serialized;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ResultCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return true, if the result of the query should be taken from and put
+     * into the cache. A query, that is sent to the master to read the own
+     * writes, is never cached, as the cache may hold a result of a replica.
+     */
+    public boolean isCacheable(String query, CypherQueryOptions options) {
+        if (options.getRouting() == CypherQueryOptions.Routing.MASTER) {
+            return false;
+        }
+        switch (options.getCaching()) {
+            case ENABLED:
+                return options.getCacheTimeToLive() != 0;
+            case DISABLED:
+                return false;
+            default:
+                return defaultEnabled && options.getCacheTimeToLive() != 0 && QueryClassifier.isReadOnly(query);
+        }
+    }
+
+    /**
+     * @param query the query
+     * @param canonicalParams the parameters of the query in canonical form
+     * @param options the options, whose columns and maximum count of rows
+     * shape the result
+     * @return the key for the result of the query
+     */
+    public Key createKey(String query, String canonicalParams, CypherQueryOptions options) {
+        return new Key(normalizeQuery(query), canonicalParams, options.getColumns(), options.getMaxRows());
+    }
+
+    /**
+     * @return the cached result for the key, or null. A serialized result is
+     * deserialized outside of the lock, if that fails, the result is removed
+     * and null is returned.
+     */
+    public CypherResult get(Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                expiredCount++;
+                entry = null;
+            }
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            if (!(entry.value instanceof byte[])) {
+                hitCount++;
+                return (CypherResult) entry.value;
+            }
+        }
+        CypherResult result = deserialize((byte[]) entry.value);
+        synchronized (this) {
+            if (result != null) {
+                hitCount++;
+            } else {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+                missCount++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * puts the result into the cache.
+     *
+     * @param timeToLive the milliseconds, the result is valid, or -1 to use
+     * the default time to live
+     * @return the result
+     */
+    public CypherResult put(Key key, CypherResult result, long timeToLive) {
+        long ttl = timeToLive < 0 ? defaultTimeToLive : timeToLive;
+        if (ttl <= 0 || result == null) {
+            return result;
+        }
+        Object value = serialized ? serialize(result) : result;
+        if (value != null) {
+            Entry entry = new Entry(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl));
+            synchronized (this) {
+                entries.put(key, entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * removes the results of the query, whatever parameters were used.
+     */
+    public synchronized void invalidate(String query) {
+        String normalizedQuery = normalizeQuery(query);
+        for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext();) {
+            if (it.next().query.equals(normalizedQuery)) {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isSerialized() {
+        return serialized;
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    private byte[] serialize(CypherResult result) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(result);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "cannot serialize result, it is not cached", ex);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private CypherResult deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (CypherResult) in.readObject();
+        } catch (IOException | ClassNotFoundException ex) {
+            LOG.log(Level.WARNING, "cannot deserialize cached result, it is removed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * collapses all whitespace outside of literals into a single blank.
+     */
+    static String normalizeQuery(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        char quote = 0;
+        boolean pendingBlank = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingBlank = normalized.length() > 0;
+                continue;
+            }
+            if (pendingBlank) {
+                normalized.append(' ');
+                pendingBlank = false;
+            }
+            normalized.append(c);
+            if (quote == 0 && (c == '\'' || c == '"' || c == '`')) {
+                quote = c;
+            } else if (quote != 0 && c == '\\' && i + 1 < query.length()) {
+                normalized.append(query.charAt(++i));
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return normalized.toString();
+    }
+}
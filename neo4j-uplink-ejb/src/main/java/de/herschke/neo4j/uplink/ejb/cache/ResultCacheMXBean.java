@@ -0,0 +1,51 @@
+package de.herschke.neo4j.uplink.ejb.cache;
+
+/**
+ * the statistics of the result cache, as exposed via JMX.
+ *
+ * @author rhk
+ */
+public interface ResultCacheMXBean {
+
+    /**
+     * @return the maximum count of cached results
+     */
+    int getMaxSize();
+
+    /**
+     * @return the count of cached results
+     */
+    int getSize();
+
+    /**
+     * @return true, if the results are kept in serialized form
+     */
+    boolean isSerialized();
+
+    /**
+     * @return the count of queries, whose result was taken from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the count of queries, whose result was not in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the count of results, that were removed to make room for newer
+     * results
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the count of results, that were removed, because their time to
+     * live was over
+     */
+    long getExpiredCount();
+
+    /**
+     * removes all results from the cache.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,58 @@
+package de.herschke.neo4j.uplink.ejb.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * a snapshot of a {@link LatencyHistogram}, all latencies are given in
+ * milliseconds.
+ *
+ * @author rhk
+ */
+public class LatencyStatistics {
+
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p95;
+    private final double p99;
+    private final double max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p95", "p99", "max"})
+    public LatencyStatistics(long count, double mean, double p50, double p95, double p99, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, mean: %.3f ms, p50: %.3f ms, p95: %.3f ms, p99: %.3f ms, max: %.3f ms", count, mean, p50, p95, p99, max);
+    }
+}
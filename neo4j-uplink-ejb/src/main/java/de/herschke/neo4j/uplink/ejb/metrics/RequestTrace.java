@@ -0,0 +1,196 @@
+package de.herschke.neo4j.uplink.ejb.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * traces the phases of one request. A phase, that was not reached, is reported
+ * with a duration of -1 and not recorded.
+ * <p>
+ * The trace of a cursor is finished, when the response stream is closed. The
+ * time until then depends on the caller, so the total latency and the parse
+ * phase are not recorded for cursors.
+ *
+ * @author rhk
+ */
+public class RequestTrace {
+
+    private final UplinkMetrics metrics;
+    private final String query;
+    private final long startNanos;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private long phaseStartNanos;
+    private long serializeNanos = -1;
+    private long httpNanos = -1;
+    private long parseNanos = -1;
+    private long materializeNanos = -1;
+    private long totalNanos = -1;
+    private long requestBytes = 0;
+    private long responseBytes = 0;
+    private int rows = 0;
+    private String failure;
+    private boolean cursor = false;
+
+    RequestTrace(UplinkMetrics metrics, String query) {
+        this.metrics = metrics;
+        this.query = query;
+        this.startNanos = System.nanoTime();
+        this.phaseStartNanos = startNanos;
+    }
+
+    /**
+     * the request body was written.
+     *
+     * @param bytes the count of bytes, that were written
+     * @param nanos the nanoseconds, that were spent to write the body
+     */
+    public void requestWritten(long bytes, long nanos) {
+        this.serializeNanos = nanos;
+        this.requestBytes = bytes;
+    }
+
+    /**
+     * the response status was received.
+     */
+    public void responded() {
+        long now = System.nanoTime();
+        this.httpNanos = now - phaseStartNanos - Math.max(0, serializeNanos);
+        this.phaseStartNanos = now;
+    }
+
+    /**
+     * the response body was parsed.
+     *
+     * @param rows the count of rows in the result
+     * @param materializeNanos the part of the parse time, that was spent to
+     * turn the rows into result values
+     */
+    public void parsed(int rows, long materializeNanos) {
+        long now = System.nanoTime();
+        this.parseNanos = Math.max(0, now - phaseStartNanos - materializeNanos);
+        this.materializeNanos = materializeNanos;
+        this.phaseStartNanos = now;
+        this.rows = rows;
+    }
+
+    /**
+     * the request failed.
+     *
+     * @param status the http status, or the kind of failure, if no response
+     * was received
+     */
+    public void failed(String status) {
+        if (this.failure == null) {
+            this.failure = status;
+        }
+    }
+
+    /**
+     * finishes the trace and records it, only the first call is recorded.
+     */
+    public void finish() {
+        if (finished.compareAndSet(false, true)) {
+            if (!cursor) {
+                this.totalNanos = System.nanoTime() - startNanos;
+            }
+            metrics.finished(this);
+        }
+    }
+
+    /**
+     * @return a stream, that counts the bytes of the response
+     */
+    public InputStream countResponse(InputStream stream) {
+        return new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    responseBytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    responseBytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                responseBytes += skipped;
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * marks this trace as trace of a cursor, that is finished, when the given
+     * response stream is closed.
+     */
+    public InputStream finishOnClose(InputStream stream) {
+        this.cursor = true;
+        metrics.cursorOpened();
+        return new FilterInputStream(stream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    finish();
+                }
+            }
+        };
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    boolean isCursor() {
+        return cursor;
+    }
+
+    long getSerializeNanos() {
+        return serializeNanos;
+    }
+
+    long getHttpNanos() {
+        return httpNanos;
+    }
+
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    long getMaterializeNanos() {
+        return materializeNanos;
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+
+    long getRequestBytes() {
+        return requestBytes;
+    }
+
+    long getResponseBytes() {
+        return responseBytes;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    String getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,198 @@
+package de.herschke.neo4j.uplink.ejb.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * collects the metrics of the requests to a Neo4j Server.
+ * <p>
+ * Queries, that take longer than the slow query threshold, are logged with
+ * level INFO. Only the given fraction of them is logged, so a slow server
+ * does not flood the log.
+ *
+ * @author rhk
+ */
+public class UplinkMetrics implements UplinkMetricsMXBean {
+
+    private static final Logger LOG = Logger.getLogger(UplinkMetrics.class.getName());
+    private final long slowQueryThresholdNanos;
+    private final double slowQuerySampleRate;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> errorCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicInteger openCursors = new AtomicInteger();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong slowQueryCount = new AtomicLong();
+    private final LatencyHistogram serializeLatency = new LatencyHistogram();
+    private final LatencyHistogram httpLatency = new LatencyHistogram();
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    private final LatencyHistogram materializeLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    /**
+     * @param slowQueryThresholdMillis queries, that take longer, are logged, a
+     * value less or equal to zero disables the slow query log
+     * @param slowQuerySampleRate the fraction of slow queries, that are logged
+     */
+    public UplinkMetrics(long slowQueryThresholdMillis, double slowQuerySampleRate) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    /**
+     * starts to trace a request.
+     *
+     * @param query the query, that is sent, or a description of the request
+     */
+    public RequestTrace start(String query) {
+        requestCount.incrementAndGet();
+        inFlightRequests.incrementAndGet();
+        return new RequestTrace(this, query);
+    }
+
+    void cursorOpened() {
+        openCursors.incrementAndGet();
+    }
+
+    void finished(RequestTrace trace) {
+        inFlightRequests.decrementAndGet();
+        if (trace.isCursor()) {
+            openCursors.decrementAndGet();
+        }
+        requestBytes.addAndGet(trace.getRequestBytes());
+        responseBytes.addAndGet(trace.getResponseBytes());
+        rowCount.addAndGet(trace.getRows());
+        serializeLatency.record(trace.getSerializeNanos());
+        httpLatency.record(trace.getHttpNanos());
+        parseLatency.record(trace.getParseNanos());
+        materializeLatency.record(trace.getMaterializeNanos());
+        totalLatency.record(trace.getTotalNanos());
+        if (trace.getFailure() != null) {
+            errorCount.incrementAndGet();
+            AtomicLong counter = errorCounts.get(trace.getFailure());
+            if (counter == null) {
+                AtomicLong newCounter = new AtomicLong();
+                counter = errorCounts.putIfAbsent(trace.getFailure(), newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.incrementAndGet();
+        }
+        if (slowQueryThresholdNanos > 0 && trace.getTotalNanos() >= slowQueryThresholdNanos) {
+            slowQueryCount.incrementAndGet();
+            if (LOG.isLoggable(Level.INFO) && ThreadLocalRandom.current().nextDouble() < slowQuerySampleRate) {
+                LogRecord record = new LogRecord(Level.INFO, "slow query ({0} ms, serialize: {1} ms, http: {2} ms, parse: {3} ms, materialize: {4} ms, {5} rows, {6} bytes): {7}");
+                record.setLoggerName(LOG.getName());
+                record.setParameters(new Object[]{millis(trace.getTotalNanos()), millis(trace.getSerializeNanos()), millis(trace.getHttpNanos()), millis(trace.getParseNanos()), millis(trace.getMaterializeNanos()), trace.getRows(), trace.getResponseBytes(), trace.getQuery()});
+                LOG.log(record);
+            }
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public Map<String, Long> getErrorCountsByStatus() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : errorCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    @Override
+    public int getOpenCursors() {
+        return openCursors.get();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.get();
+    }
+
+    @Override
+    public LatencyStatistics getSerializeLatency() {
+        return serializeLatency.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getHttpLatency() {
+        return httpLatency.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getParseLatency() {
+        return parseLatency.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getMaterializeLatency() {
+        return materializeLatency.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getTotalLatency() {
+        return totalLatency.getStatistics();
+    }
+
+    @Override
+    public void reset() {
+        requestCount.set(0);
+        errorCount.set(0);
+        errorCounts.clear();
+        requestBytes.set(0);
+        responseBytes.set(0);
+        rowCount.set(0);
+        slowQueryCount.set(0);
+        serializeLatency.reset();
+        httpLatency.reset();
+        parseLatency.reset();
+        materializeLatency.reset();
+        totalLatency.reset();
+    }
+}
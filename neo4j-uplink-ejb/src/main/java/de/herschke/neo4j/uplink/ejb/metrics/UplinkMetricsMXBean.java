@@ -0,0 +1,91 @@
+package de.herschke.neo4j.uplink.ejb.metrics;
+
+import java.util.Map;
+
+/**
+ * the metrics of the requests to a Neo4j Server, as exposed via JMX.
+ *
+ * @author rhk
+ */
+public interface UplinkMetricsMXBean {
+
+    /**
+     * @return the count of requests, that were sent
+     */
+    long getRequestCount();
+
+    /**
+     * @return the count of failed requests
+     */
+    long getErrorCount();
+
+    /**
+     * @return the count of failed requests by http status, failures without a
+     * response are counted as 'connection', unparseable responses as
+     * 'unparseable', parameters, that cannot be written, as 'unwritable'
+     */
+    Map<String, Long> getErrorCountsByStatus();
+
+    /**
+     * @return the count of requests, that are currently in flight
+     */
+    int getInFlightRequests();
+
+    /**
+     * @return the count of cursors, that are currently open
+     */
+    int getOpenCursors();
+
+    /**
+     * @return the count of bytes, that were sent in request bodies
+     */
+    long getRequestBytes();
+
+    /**
+     * @return the count of bytes, that were received in response bodies
+     */
+    long getResponseBytes();
+
+    /**
+     * @return the count of rows, that were received in results
+     */
+    long getRowCount();
+
+    /**
+     * @return the count of queries, that were slower than the slow query
+     * threshold
+     */
+    long getSlowQueryCount();
+
+    /**
+     * @return the latency of writing the request body, that is streamed to
+     * the connection, so this includes sending it
+     */
+    LatencyStatistics getSerializeLatency();
+
+    /**
+     * @return the latency from sending the request until the response status
+     * is received, without writing the request body
+     */
+    LatencyStatistics getHttpLatency();
+
+    /**
+     * @return the latency of parsing the response body
+     */
+    LatencyStatistics getParseLatency();
+
+    /**
+     * @return the latency of turning the parsed rows into result values
+     */
+    LatencyStatistics getMaterializeLatency();
+
+    /**
+     * @return the latency of the whole request
+     */
+    LatencyStatistics getTotalLatency();
+
+    /**
+     * resets all counters and histograms.
+     */
+    void reset();
+}
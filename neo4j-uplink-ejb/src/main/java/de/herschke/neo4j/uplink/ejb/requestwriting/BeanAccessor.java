@@ -0,0 +1,133 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * reads the properties of a bean, that is passed as parameter of a cypher
+ * query. The getters of a class are resolved only once and kept as
+ * {@link MethodHandle}s, the properties are ordered by name.
+ *
+ * @author rhk
+ */
+class BeanAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final ClassValue<BeanAccessor> ACCESSORS = new ClassValue<BeanAccessor>() {
+        @Override
+        protected BeanAccessor computeValue(Class<?> type) {
+            return new BeanAccessor(type);
+        }
+    };
+
+    /**
+     * @return the accessor of the given class, that is created on first use
+     */
+    static BeanAccessor forClass(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+    private final String[] names;
+    private final MethodHandle[] getters;
+    /**
+     * the reason, why a getter is not accessible, by index of the property.
+     */
+    private final Exception[] failures;
+
+    private BeanAccessor(Class<?> type) {
+        List<String> propertyNames = new ArrayList<>();
+        List<MethodHandle> propertyGetters = new ArrayList<>();
+        List<Exception> propertyFailures = new ArrayList<>();
+        Map<String, Method> methods = new TreeMap<>();
+        for (Method method : type.getMethods()) {
+            String name = getPropertyName(method);
+            if (name != null) {
+                methods.put(name, method);
+            }
+        }
+        for (Map.Entry<String, Method> property : methods.entrySet()) {
+            Method method = property.getValue();
+            propertyNames.add(property.getKey());
+            try {
+                propertyGetters.add(unreflect(method));
+                propertyFailures.add(null);
+            } catch (IllegalAccessException | RuntimeException ex) {
+                propertyGetters.add(null);
+                propertyFailures.add(ex);
+            }
+        }
+        this.names = propertyNames.toArray(new String[propertyNames.size()]);
+        this.getters = propertyGetters.toArray(new MethodHandle[propertyGetters.size()]);
+        this.failures = propertyFailures.toArray(new Exception[propertyFailures.size()]);
+    }
+
+    private static String getPropertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 0 || method.getReturnType() == void.class || "getClass".equals(method.getName())) {
+            return null;
+        }
+        String methodName = method.getName();
+        int prefix;
+        if (methodName.startsWith("get")) {
+            prefix = 3;
+        } else if (methodName.startsWith("is")) {
+            prefix = 2;
+        } else {
+            return null;
+        }
+        if (methodName.length() == prefix) {
+            return null;
+        }
+        return methodName.substring(prefix, prefix + 1).toLowerCase() + methodName.substring(prefix + 1);
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            // e.g. public methods of a private inner class
+            method.setAccessible(true);
+        }
+        return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+    }
+
+    int getPropertyCount() {
+        return names.length;
+    }
+
+    String getPropertyName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the value of the property at the given index of the bean
+     * @throws CypherException if the getter is not accessible or throws an
+     * exception
+     */
+    Object getPropertyValue(Object bean, int index) throws CypherException {
+        if (getters[index] == null) {
+            throw cannotBuildQuery(failures[index]);
+        }
+        try {
+            return getters[index].invokeExact(bean);
+        } catch (Error err) {
+            throw err;
+        } catch (Throwable ex) {
+            throw cannotBuildQuery(ex);
+        }
+    }
+
+    private CypherException cannotBuildQuery(Throwable ex) {
+        return new CypherException(String.format("cannot build cypher-query, due to: %s(%s)", ex.getClass().getSimpleName(), ex.getMessage()), ex);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+}
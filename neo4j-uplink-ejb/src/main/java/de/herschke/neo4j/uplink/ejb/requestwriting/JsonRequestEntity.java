@@ -0,0 +1,203 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherStatement;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * a request entity, that is written as json directly to the output stream of
+ * the connection, while the request is sent. Neither the json string nor a
+ * copy of the parameters is kept in memory.
+ * <p>
+ * Large entities may be compressed with gzip, see
+ * {@link #compressIfLargerThan(int)}.
+ *
+ * @author rhk
+ */
+public abstract class JsonRequestEntity implements StreamingOutput {
+
+    private static final int BUFFER_SIZE = 8192;
+    private long writtenBytes = 0;
+    private long writeNanos = 0;
+    private boolean compressed = false;
+    /**
+     * the entity, if it was written completely while its size was checked.
+     */
+    private byte[] buffered = null;
+
+    /**
+     * @return the entity of a request to the cypher endpoint
+     */
+    public static JsonRequestEntity cypherRequest(final String query, final Map<String, Object> params) {
+        return new JsonRequestEntity() {
+            @Override
+            protected void writeTo(JsonRequestWriter writer) throws IOException, CypherException {
+                writer.writeCypherRequest(query, params);
+            }
+        };
+    }
+
+    /**
+     * @return the entity of a request to the batch endpoint, that posts each
+     * statement to the cypher endpoint
+     */
+    public static JsonRequestEntity batchRequest(final List<CypherStatement> statements) {
+        return new JsonRequestEntity() {
+            @Override
+            protected void writeTo(JsonRequestWriter writer) throws IOException, CypherException {
+                Writer out = writer.getOut();
+                out.write('[');
+                for (int i = 0; i < statements.size(); i++) {
+                    CypherStatement statement = statements.get(i);
+                    out.write(i == 0 ? "{\"method\":\"POST\",\"to\":\"/cypher\",\"id\":" : ",{\"method\":\"POST\",\"to\":\"/cypher\",\"id\":");
+                    out.write(Integer.toString(i));
+                    out.write(",\"body\":");
+                    writer.writeCypherRequest(statement.getQuery(), statement.getParams());
+                    out.write('}');
+                }
+                out.write(']');
+            }
+        };
+    }
+
+    /**
+     * @return the entity, that writes the value as json
+     */
+    public static JsonRequestEntity value(final Object value) {
+        return new JsonRequestEntity() {
+            @Override
+            protected void writeTo(JsonRequestWriter writer) throws IOException, CypherException {
+                writer.writeValue(value);
+            }
+        };
+    }
+
+    protected abstract void writeTo(JsonRequestWriter writer) throws IOException, CypherException;
+
+    /**
+     * decides, whether this entity is compressed with gzip. The size of an
+     * entity is not known before it is written, so it is written into a
+     * buffer, until it exceeds the threshold. A smaller entity is sent from
+     * that buffer, a larger one is written again and compressed while it is
+     * sent, so at most the threshold is written twice.
+     *
+     * @param threshold the count of bytes, an entity must exceed to be
+     * compressed
+     * @return true, if the entity is compressed, so the request must be sent
+     * with 'Content-Encoding: gzip'
+     * @throws CypherException if a parameter cannot be written
+     */
+    public boolean compressIfLargerThan(final int threshold) throws CypherException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(threshold, BUFFER_SIZE)) {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (count + len > threshold) {
+                    throw new ThresholdExceeded();
+                }
+                super.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+        };
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(buffer, "UTF-8"), BUFFER_SIZE);
+            writeTo(new JsonRequestWriter(out, false));
+            out.flush();
+            buffered = buffer.toByteArray();
+            compressed = false;
+        } catch (ThresholdExceeded ex) {
+            buffered = null;
+            compressed = true;
+        } catch (IOException ex) {
+            throw new IllegalStateException("cannot write to a buffer", ex);
+        } finally {
+            writeNanos += System.nanoTime() - start;
+        }
+        return compressed;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        OutputStream counting = new FilterOutputStream(output) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                writtenBytes++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                writtenBytes += len;
+            }
+        };
+        try {
+            if (buffered != null) {
+                counting.write(buffered, 0, buffered.length);
+                counting.flush();
+            } else if (compressed) {
+                GZIPOutputStream gzip = new GZIPOutputStream(counting, BUFFER_SIZE);
+                Writer out = new BufferedWriter(new OutputStreamWriter(gzip, "UTF-8"), BUFFER_SIZE);
+                writeTo(new JsonRequestWriter(out, false));
+                out.flush();
+                gzip.finish();
+                counting.flush();
+            } else {
+                Writer out = new BufferedWriter(new OutputStreamWriter(counting, "UTF-8"), BUFFER_SIZE);
+                writeTo(new JsonRequestWriter(out, false));
+                out.flush();
+            }
+        } catch (CypherException ex) {
+            throw new ParameterWriteException(ex);
+        } finally {
+            writeNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return true, if the entity is compressed with gzip
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return the count of bytes, that were written, after compression
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return the nanoseconds, that were spent to write the entity, including
+     * the time to send it and to check its size
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * stops writing into the buffer, if the entity exceeds the threshold.
+     */
+    private static class ThresholdExceeded extends RuntimeException {
+
+        ThresholdExceeded() {
+            super(null, null, false, false);
+        }
+    }
+}
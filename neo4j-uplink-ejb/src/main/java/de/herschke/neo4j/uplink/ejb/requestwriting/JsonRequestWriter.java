@@ -0,0 +1,282 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * writes the json of a request directly to a {@link Writer}.
+ * <p>
+ * The parameters of a cypher query are written as they are given, except for
+ * beans: a bean is written as object of its properties, and each property is
+ * written as additional parameter, whose name is the path of the property,
+ * e.g. a parameter 'person' with the property 'name' is written as parameters
+ * 'person' and 'person.name'.
+ *
+ * @author rhk
+ */
+public class JsonRequestWriter {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final Writer out;
+    private final boolean sorted;
+
+    /**
+     * @param out the writer to write to
+     * @param sorted true, if the entries of objects should be sorted by name,
+     * so equal parameters are always written equally
+     */
+    public JsonRequestWriter(Writer out, boolean sorted) {
+        this.out = out;
+        this.sorted = sorted;
+    }
+
+    Writer getOut() {
+        return out;
+    }
+
+    /**
+     * @return the parameters in canonical form, i.e. with sorted entries
+     */
+    public static String toCanonicalParams(Map<String, Object> params) throws CypherException {
+        StringWriter canonical = new StringWriter();
+        try {
+            new JsonRequestWriter(canonical, true).writeParams(params);
+        } catch (IOException ex) {
+            throw new IllegalStateException("cannot write to a StringWriter", ex);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * writes the body of a request to the cypher endpoint.
+     */
+    public void writeCypherRequest(String query, Map<String, Object> params) throws IOException, CypherException {
+        out.write("{\"query\":");
+        writeString(query);
+        out.write(",\"params\":");
+        writeParams(params);
+        out.write('}');
+    }
+
+    /**
+     * writes the parameters of a cypher query as object.
+     */
+    public void writeParams(Map<String, Object> params) throws IOException, CypherException {
+        if (sorted) {
+            // collect the flattened bean properties, so they can be sorted
+            Map<String, Object> flattened = new TreeMap<>();
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                flatten(flattened, param.getKey(), param.getValue());
+            }
+            writeValue(flattened);
+            return;
+        }
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            first = writeParam(param.getKey(), param.getValue(), first);
+        }
+        out.write('}');
+    }
+
+    private boolean writeParam(String name, Object value, boolean first) throws IOException, CypherException {
+        if (!first) {
+            out.write(',');
+        }
+        writeString(name);
+        out.write(':');
+        if (!isBean(value)) {
+            writeValue(value);
+            return false;
+        }
+        BeanAccessor accessor = BeanAccessor.forClass(value.getClass());
+        Object[] values = new Object[accessor.getPropertyCount()];
+        out.write('{');
+        for (int i = 0; i < values.length; i++) {
+            values[i] = accessor.getPropertyValue(value, i);
+            if (i > 0) {
+                out.write(',');
+            }
+            writeString(accessor.getPropertyName(i));
+            out.write(':');
+            writeValue(values[i]);
+        }
+        out.write('}');
+        for (int i = 0; i < values.length; i++) {
+            writeParam(name + "." + accessor.getPropertyName(i), values[i], false);
+        }
+        return false;
+    }
+
+    private void flatten(Map<String, Object> flattened, String name, Object value) throws CypherException {
+        if (!isBean(value)) {
+            flattened.put(name, value);
+            return;
+        }
+        BeanAccessor accessor = BeanAccessor.forClass(value.getClass());
+        Map<String, Object> properties = new TreeMap<>();
+        for (int i = 0; i < accessor.getPropertyCount(); i++) {
+            Object propertyValue = accessor.getPropertyValue(value, i);
+            properties.put(accessor.getPropertyName(i), propertyValue);
+            flatten(flattened, name + "." + accessor.getPropertyName(i), propertyValue);
+        }
+        flattened.put(name, properties);
+    }
+
+    private static boolean isBean(Object value) {
+        return !(value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof JSONStreamAware || value instanceof JSONAware || value instanceof Map || value instanceof Collection
+                || value instanceof Class || value instanceof Enum || value.getClass().isArray());
+    }
+
+    /**
+     * writes any value as json, beans are written as object of their
+     * properties.
+     */
+    public void writeValue(Object value) throws IOException, CypherException {
+        if (value == null) {
+            out.write("null");
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Double) {
+            Double d = (Double) value;
+            out.write(d.isInfinite() || d.isNaN() ? "null" : d.toString());
+        } else if (value instanceof Float) {
+            Float f = (Float) value;
+            out.write(f.isInfinite() || f.isNaN() ? "null" : f.toString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.write(value.toString());
+        } else if (value instanceof Character || value instanceof Enum) {
+            writeString(value.toString());
+        } else if (value instanceof Class) {
+            writeString(((Class) value).getSimpleName());
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            out.write('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeValue(element);
+            }
+            out.write(']');
+        } else if (value.getClass().isArray()) {
+            out.write('[');
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeValue(Array.get(value, i));
+            }
+            out.write(']');
+        } else if (value instanceof JSONStreamAware) {
+            ((JSONStreamAware) value).writeJSONString(out);
+        } else if (value instanceof JSONAware) {
+            out.write(((JSONAware) value).toJSONString());
+        } else {
+            BeanAccessor accessor = BeanAccessor.forClass(value.getClass());
+            out.write('{');
+            for (int i = 0; i < accessor.getPropertyCount(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeString(accessor.getPropertyName(i));
+                out.write(':');
+                writeValue(accessor.getPropertyValue(value, i));
+            }
+            out.write('}');
+        }
+    }
+
+    private void writeMap(Map<?, ?> map) throws IOException, CypherException {
+        if (sorted && !(map instanceof TreeMap)) {
+            Map<String, Object> sortedMap = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                sortedMap.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            map = sortedMap;
+        }
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            out.write(':');
+            writeValue(entry.getValue());
+        }
+        out.write('}');
+    }
+
+    /**
+     * writes the string as json string, the characters are escaped on the
+     * fly, so no escaped copy of the string is created.
+     */
+    public void writeString(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            switch (c) {
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '/':
+                    escape = "\\/";
+                    break;
+                case '\b':
+                    escape = "\\b";
+                    break;
+                case '\f':
+                    escape = "\\f";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                default:
+                    if (c < 0x20 || (c >= 0x7f && c <= 0x9f) || (c >= 0x2000 && c <= 0x20ff)) {
+                        escape = null;
+                    } else {
+                        continue;
+                    }
+            }
+            out.write(value, start, i - start);
+            if (escape != null) {
+                out.write(escape);
+            } else {
+                out.write("\\u");
+                out.write(HEX[(c >> 12) & 0xf]);
+                out.write(HEX[(c >> 8) & 0xf]);
+                out.write(HEX[(c >> 4) & 0xf]);
+                out.write(HEX[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,23 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.io.IOException;
+
+/**
+ * signals, that a parameter cannot be written to the request, e.g. because
+ * the getter of a bean throws an exception. The {@link CypherException} is
+ * passed as cause through the http client.
+ *
+ * @author rhk
+ */
+public class ParameterWriteException extends IOException {
+
+    public ParameterWriteException(CypherException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized CypherException getCause() {
+        return (CypherException) super.getCause();
+    }
+}
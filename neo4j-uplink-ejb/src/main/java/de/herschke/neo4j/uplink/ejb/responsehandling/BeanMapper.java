@@ -0,0 +1,404 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.GraphEntity;
+import java.beans.ConstructorProperties;
+import java.beans.Introspector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * creates beans of a class from the values of a result row, the inverse of
+ * the bean access, when a bean is written as parameter.
+ * <p>
+ * A bean is created by the public constructor annotated with
+ * {@link ConstructorProperties}, whose arguments are the named properties, or
+ * by the public no-arg constructor. The other properties are set by their
+ * public setters. The constructor, the setters and the conversion of the
+ * values to the types of the properties are resolved only once per class and
+ * kept as {@link MethodHandle}s.
+ * <p>
+ * Values like strings, numbers, enums, nodes or maps are not created as beans,
+ * but converted from the first value of a row.
+ *
+ * @author rhk
+ */
+class BeanMapper {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ClassValue<BeanMapper> MAPPERS = new ClassValue<BeanMapper>() {
+        @Override
+        protected BeanMapper computeValue(Class<?> type) {
+            return new BeanMapper(type);
+        }
+    };
+
+    /**
+     * @return the mapper of the given class, that is created on first use
+     */
+    static BeanMapper forClass(Class<?> type) {
+        return MAPPERS.get(type);
+    }
+
+    /**
+     * converts a raw value of a result into the type of a property.
+     */
+    private static abstract class Converter {
+
+        abstract Object convert(Object value);
+    }
+    private final Class<?> type;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final String[] names;
+    private final Class<?>[] types;
+    private final Converter[] converters;
+    /**
+     * the setters by index of the property, null for the arguments of the
+     * constructor.
+     */
+    private final MethodHandle[] setters;
+    /**
+     * the constructor, that takes the array of its arguments.
+     */
+    private final MethodHandle constructor;
+    private final int constructorArgumentCount;
+    /**
+     * the reason, why the class cannot be created.
+     */
+    private final Exception failure;
+    /**
+     * the converter of a value type, or null, if beans are created.
+     */
+    private final Converter valueConverter;
+
+    private BeanMapper(Class<?> type) {
+        this.type = type;
+        Map<String, Class<?>> propertyTypes = new LinkedHashMap<>();
+        List<MethodHandle> propertySetters = new ArrayList<>();
+        MethodHandle creator = null;
+        int argumentCount = 0;
+        Exception creatorFailure = null;
+        this.valueConverter = isValueType(type) ? converterFor(type) : null;
+        if (valueConverter == null) {
+            try {
+                Constructor<?> chosen = null;
+                for (Constructor<?> candidate : type.getConstructors()) {
+                    if (candidate.isAnnotationPresent(ConstructorProperties.class)) {
+                        chosen = candidate;
+                        break;
+                    }
+                }
+                if (chosen == null) {
+                    chosen = type.getConstructor();
+                }
+                if (chosen.isAnnotationPresent(ConstructorProperties.class)) {
+                    String[] argumentNames = chosen.getAnnotation(ConstructorProperties.class).value();
+                    Class<?>[] argumentTypes = chosen.getParameterTypes();
+                    if (argumentNames.length != argumentTypes.length) {
+                        throw new IllegalArgumentException(String.format("@ConstructorProperties names %d arguments, but the constructor takes %d", argumentNames.length, argumentTypes.length));
+                    }
+                    for (int i = 0; i < argumentNames.length; i++) {
+                        propertyTypes.put(argumentNames[i], argumentTypes[i]);
+                        propertySetters.add(null);
+                    }
+                    argumentCount = argumentNames.length;
+                }
+                if (Modifier.isAbstract(type.getModifiers())) {
+                    throw new InstantiationException("the class is abstract");
+                }
+                if (!Modifier.isPublic(type.getModifiers())) {
+                    chosen.setAccessible(true);
+                }
+                creator = MethodHandles.publicLookup().unreflectConstructor(chosen)
+                        .asSpreader(Object[].class, argumentCount)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                creatorFailure = ex;
+            }
+            for (Method method : type.getMethods()) {
+                String name = getPropertyName(method);
+                if (name != null && !propertyTypes.containsKey(name)) {
+                    try {
+                        propertySetters.add(unreflect(method));
+                        propertyTypes.put(name, method.getParameterTypes()[0]);
+                    } catch (IllegalAccessException | RuntimeException ex) {
+                        // an inaccessible setter is treated like a missing one
+                    }
+                }
+            }
+        }
+        this.names = propertyTypes.keySet().toArray(new String[propertyTypes.size()]);
+        this.types = propertyTypes.values().toArray(new Class<?>[propertyTypes.size()]);
+        this.converters = new Converter[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+            converters[i] = converterFor(types[i]);
+        }
+        this.setters = propertySetters.toArray(new MethodHandle[propertySetters.size()]);
+        this.constructor = creator;
+        this.constructorArgumentCount = argumentCount;
+        this.failure = creatorFailure;
+    }
+
+    private static String getPropertyName(Method method) {
+        String methodName = method.getName();
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 1 || !methodName.startsWith("set") || methodName.length() == 3) {
+            return null;
+        }
+        return Introspector.decapitalize(methodName.substring(3));
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            // e.g. public methods of a private inner class
+            method.setAccessible(true);
+        }
+        return MethodHandles.publicLookup().unreflect(method).asType(SETTER_TYPE);
+    }
+
+    /**
+     * @return the index of the property with the given name, or -1, if the
+     * class has no such property
+     */
+    int getPropertyIndex(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    int getPropertyCount() {
+        return names.length;
+    }
+
+    /**
+     * @return true, if the first value of a row is converted, instead of
+     * creating a bean
+     */
+    boolean isValueType() {
+        return valueConverter != null;
+    }
+
+    /**
+     * @return the given raw value converted into the type of this mapper
+     * @throws CypherException if the value cannot be converted
+     */
+    Object createValue(Object value) throws CypherException {
+        if (value == null) {
+            return type.isPrimitive() ? defaultValue(type) : null;
+        }
+        try {
+            return valueConverter.convert(value);
+        } catch (RuntimeException ex) {
+            throw new CypherException(String.format("cannot map the value %s onto %s", value, type.getName()), ex);
+        }
+    }
+
+    /**
+     * creates a bean from the given raw values.
+     *
+     * @param values the raw values by index of the property
+     * @param present whether a value was given by index of the property, the
+     * setters of the other properties are not called
+     * @throws CypherException if the bean cannot be created, or a value
+     * cannot be converted
+     */
+    Object create(Object[] values, boolean[] present) throws CypherException {
+        if (constructor == null) {
+            throw new CypherException(String.format("cannot create %s from a result row, due to: %s(%s)", type.getName(), failure.getClass().getSimpleName(), failure.getMessage()), failure);
+        }
+        int index = 0;
+        try {
+            Object[] arguments = new Object[constructorArgumentCount];
+            for (; index < constructorArgumentCount; index++) {
+                Object argument = present[index] ? convert(index, values[index]) : null;
+                // a primitive argument takes its default value for null
+                arguments[index] = argument != null ? argument : defaultValue(types[index]);
+            }
+            Object bean = constructor.invokeExact(arguments);
+            for (; index < names.length; index++) {
+                if (present[index]) {
+                    Object value = convert(index, values[index]);
+                    if (value != null || !types[index].isPrimitive()) {
+                        setters[index].invokeExact(bean, value);
+                    }
+                }
+            }
+            return bean;
+        } catch (CypherException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            String property = index < names.length ? names[index] : "";
+            throw new CypherException(String.format("cannot create %s from a result row at property '%s', due to: %s(%s)", type.getName(), property, ex.getClass().getSimpleName(), ex.getMessage()), ex);
+        }
+    }
+
+    private Object convert(int index, Object value) throws CypherException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return converters[index].convert(value);
+        } catch (RuntimeException ex) {
+            throw new CypherException(String.format("cannot map the value %s onto the property '%s' of type %s in %s", value, names[index], types[index].getSimpleName(), type.getName()), ex);
+        }
+    }
+
+    private static boolean isValueType(Class<?> type) {
+        return type.isPrimitive() || type.isArray() || type.isEnum() || type == Object.class || type == String.class
+                || Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class
+                || GraphEntity.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+
+    /**
+     * @return the converter of raw values into the given type, so the type is
+     * inspected only once
+     */
+    private static Converter converterFor(final Class<?> type) {
+        if (type == Object.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return DefaultCypherResult.toCellValue(value);
+                }
+            };
+        } else if (type == long.class || type == Long.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).longValue();
+                }
+            };
+        } else if (type == int.class || type == Integer.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).intValue();
+                }
+            };
+        } else if (type == short.class || type == Short.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).shortValue();
+                }
+            };
+        } else if (type == byte.class || type == Byte.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).byteValue();
+                }
+            };
+        } else if (type == double.class || type == Double.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).doubleValue();
+                }
+            };
+        } else if (type == float.class || type == Float.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return ((Number) value).floatValue();
+                }
+            };
+        } else if (type == BigDecimal.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+                }
+            };
+        } else if (type == BigInteger.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return value instanceof BigInteger ? value : BigInteger.valueOf(((Number) value).longValue());
+                }
+            };
+        } else if (type == boolean.class || type == Boolean.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return (Boolean) value;
+                }
+            };
+        } else if (type == char.class || type == Character.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    String string = (String) value;
+                    if (string.length() != 1) {
+                        throw new IllegalArgumentException("not a single character: " + string);
+                    }
+                    return string.charAt(0);
+                }
+            };
+        } else if (type == String.class) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return (String) value;
+                }
+            };
+        } else if (type.isEnum()) {
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return enumValue(type, (String) value);
+                }
+            };
+        } else if (type.isArray()) {
+            final Class<?> componentType = type.getComponentType();
+            final Converter componentConverter = converterFor(componentType);
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    List<?> list = (List<?>) value;
+                    Object array = Array.newInstance(componentType, list.size());
+                    for (int i = 0; i < list.size(); i++) {
+                        Object component = list.get(i);
+                        Array.set(array, i, component == null ? null : componentConverter.convert(component));
+                    }
+                    return array;
+                }
+            };
+        } else {
+            // nodes, relationships, maps and lists are taken as they are
+            return new Converter() {
+                @Override
+                Object convert(Object value) {
+                    return type.cast(DefaultCypherResult.toCellValue(value));
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // the type is an enum, but its constants are unknown here
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + Arrays.toString(names);
+    }
+}
@@ -0,0 +1,124 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.GraphEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * maps the rows of a cypher response onto objects of a class while it is
+ * parsed, so no {@link de.herschke.neo4j.uplink.api.CypherResult} is built.
+ * <p>
+ * A column is mapped onto the property of its name, without the identifier
+ * and the '?' or '!' suffix, e.g. the column 'm.title?' onto the property
+ * 'title'. The properties of a node or a map in a column, that names no
+ * property, are mapped onto the properties of the same name, and the id of a
+ * node onto the property 'id'. Columns, that name a property, take precedence.
+ * <p>
+ * Values like strings or numbers are taken from the first column, see
+ * {@link BeanMapper}.
+ *
+ * @author rhk
+ */
+public class BeanMappingSink<T> implements CypherResultSink {
+
+    private final BeanMapper mapper;
+    private final List<String> columns = new ArrayList<>();
+    private final List<T> results = new ArrayList<>();
+    /**
+     * the index of the property by index of the column, -1 if the column names
+     * no property.
+     */
+    private int[] columnProperties;
+    private final int idProperty;
+
+    public BeanMappingSink(Class<T> type) {
+        this.mapper = BeanMapper.forClass(type);
+        this.idProperty = mapper.getPropertyIndex("id");
+    }
+
+    /**
+     * @return the objects, one per row
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    @Override
+    public void addColumn(String columnName) {
+        columns.add(columnName);
+        columnProperties = null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // the mapper creates instances of T
+    public boolean addRow(int rowIndex, List<?> rowValues) {
+        try {
+            if (mapper.isValueType()) {
+                results.add((T) mapper.createValue(rowValues.isEmpty() ? null : rowValues.get(0)));
+            } else {
+                results.add((T) mapRow(rowValues));
+            }
+        } catch (CypherException ex) {
+            throw new ResultMappingException(ex);
+        }
+        return true;
+    }
+
+    private Object mapRow(List<?> rowValues) throws CypherException {
+        if (columnProperties == null) {
+            columnProperties = new int[columns.size()];
+            for (int c = 0; c < columnProperties.length; c++) {
+                columnProperties[c] = mapper.getPropertyIndex(getPropertyName(columns.get(c)));
+            }
+        }
+        Object[] values = new Object[mapper.getPropertyCount()];
+        boolean[] present = new boolean[values.length];
+        int columnCount = Math.min(rowValues.size(), columnProperties.length);
+        for (int c = 0; c < columnCount; c++) {
+            Object cell = rowValues.get(c);
+            if (columnProperties[c] < 0 && cell instanceof Map) {
+                mapEntity((Map<?, ?>) cell, values, present);
+            }
+        }
+        for (int c = 0; c < columnCount; c++) {
+            int property = columnProperties[c];
+            if (property >= 0) {
+                values[property] = rowValues.get(c);
+                present[property] = true;
+            }
+        }
+        return mapper.create(values, present);
+    }
+
+    private void mapEntity(Map<?, ?> entity, Object[] values, boolean[] present) {
+        Map<?, ?> properties = entity;
+        Object self = entity.get("self");
+        if (self instanceof String && entity.get("data") instanceof Map) {
+            properties = (Map<?, ?>) entity.get("data");
+            if (idProperty >= 0 && GraphEntity.getEntityType((String) self) != null) {
+                values[idProperty] = GraphEntity.parseId((String) self);
+                present[idProperty] = true;
+            }
+        }
+        for (Map.Entry<?, ?> property : properties.entrySet()) {
+            int index = mapper.getPropertyIndex(String.valueOf(property.getKey()));
+            if (index >= 0) {
+                values[index] = property.getValue();
+                present[index] = true;
+            }
+        }
+    }
+
+    /**
+     * @return the name of the property, that the given column is mapped onto
+     */
+    static String getPropertyName(String columnName) {
+        String name = columnName;
+        if (name.endsWith("?") || name.endsWith("!")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,105 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.GraphEntity;
+import de.herschke.neo4j.uplink.api.Node;
+import de.herschke.neo4j.uplink.api.Relationship;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.simple.JSONObject;
+
+/**
+ * converts the raw cell values of one result like
+ * {@link DefaultCypherResult#toCellValue(Object)}, but lets repeated values
+ * share one instance.
+ * <p>
+ * A node or relationship, that occurs in several cells, is created only once
+ * per id, the later occurrences are dropped in favour of the first one. The
+ * keys of nodes, relationships and their properties, the types of
+ * relationships and short strings are interned within the result, so that a
+ * wide result does not keep a copy of them per cell.
+ *
+ * @author rhk
+ */
+class CellValueInterner {
+
+    /**
+     * longer strings are rarely repeated, so they are not worth a lookup.
+     */
+    static final int MAX_INTERNED_LENGTH = 32;
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final Map<Long, Relationship> relationships = new HashMap<>();
+    private final Map<String, String> strings = new HashMap<>();
+
+    Object toCellValue(Object value) {
+        if (value instanceof String) {
+            return internValue((String) value);
+        }
+        if (value instanceof JSONObject && ((JSONObject) value).containsKey("self")) {
+            JSONObject entity = (JSONObject) value;
+            Object selfUrl = entity.get("self");
+            String type = selfUrl instanceof String ? GraphEntity.getEntityType((String) selfUrl) : null;
+            if (GraphEntity.NODE.equals(type)) {
+                Long id = GraphEntity.parseId((String) selfUrl);
+                Node node = nodes.get(id);
+                if (node == null) {
+                    node = new Node(internEntity(entity));
+                    nodes.put(id, node);
+                }
+                return node;
+            } else if (GraphEntity.RELATIONSHIP.equals(type)) {
+                Long id = GraphEntity.parseId((String) selfUrl);
+                Relationship relationship = relationships.get(id);
+                if (relationship == null) {
+                    relationship = new Relationship(internEntity(entity));
+                    relationships.put(id, relationship);
+                }
+                return relationship;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return a copy of the entity with interned keys, type and properties
+     */
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    private JSONObject internEntity(JSONObject entity) {
+        JSONObject copy = new JSONObject();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) entity).entrySet()) {
+            Object value = entry.getValue();
+            if ("data".equals(entry.getKey()) && value instanceof JSONObject) {
+                value = internProperties((JSONObject) value);
+            } else if ("type".equals(entry.getKey()) && value instanceof String) {
+                value = intern((String) value);
+            }
+            copy.put(intern((String) entry.getKey()), value);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    private JSONObject internProperties(JSONObject properties) {
+        JSONObject copy = new JSONObject();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) properties).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                value = internValue((String) value);
+            }
+            copy.put(intern((String) entry.getKey()), value);
+        }
+        return copy;
+    }
+
+    private String internValue(String value) {
+        return value.length() <= MAX_INTERNED_LENGTH ? intern(value) : value;
+    }
+
+    private String intern(String value) {
+        String interned = strings.get(value);
+        if (interned == null) {
+            strings.put(value, value);
+            interned = value;
+        }
+        return interned;
+    }
+}
@@ -0,0 +1,217 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherBatchException;
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.ParseException;
+
+/**
+ * a {@link ContentHandler} that is used to parse the response of a batch of
+ * cypher queries, that was sent to the batch endpoint in streaming mode.
+ * <p>
+ * Here's an example of a batch response:
+ * <p>
+ * <pre>
+ * [
+ *   {
+ *     "id" : 0,
+ *     "from" : "/cypher",
+ *     "body" : { "columns" : [ "n.name" ], "data" : [ [ "Keanu Reeves" ] ] },
+ *     "status" : 200
+ *   },
+ *   {
+ *     "id" : 1,
+ *     "from" : "/cypher",
+ *     "body" : { "message" : "...", "exception" : "SyntaxException", ... },
+ *     "status" : 400
+ *   }
+ * ]
+ * </pre>
+ * <p>
+ * The body of each job is passed to a {@link CypherResponseHandler}.
+ *
+ * @author rhk
+ */
+public class CypherBatchResponseHandler extends AbstractContentHandler {
+
+    /**
+     * the body of a job, that collects the result, or the error message.
+     */
+    private static class JobBodyHandler extends CypherResponseHandler {
+
+        private String captureKey;
+        private String message;
+        private String exception;
+
+        @Override
+        public boolean startObjectEntry(String key) throws ParseException, IOException {
+            captureKey = null;
+            if (getDelegate() == null && ("message".equals(key) || "exception".equals(key))) {
+                captureKey = key;
+                return true;
+            }
+            return super.startObjectEntry(key);
+        }
+
+        @Override
+        public boolean primitive(Object value) throws ParseException, IOException {
+            if (captureKey != null) {
+                if ("message".equals(captureKey) && message == null) {
+                    message = String.valueOf(value);
+                } else if ("exception".equals(captureKey) && exception == null) {
+                    exception = String.valueOf(value);
+                }
+                captureKey = null;
+                return true;
+            }
+            return super.primitive(value);
+        }
+    }
+
+    private static class Job {
+
+        private int id = -1;
+        private int status = 200;
+        private JobBodyHandler body;
+    }
+    private final int statementCount;
+    private final List<Job> jobs = new ArrayList<>();
+    /**
+     * 0: outside the jobs array, 1: inside the jobs array, 2: inside a job,
+     * greater than 2: inside the body of a job.
+     */
+    private int depth = 0;
+    private Job currentJob;
+    private String currentKey;
+
+    public CypherBatchResponseHandler(int statementCount) {
+        this.statementCount = statementCount;
+    }
+
+    private boolean inBody() {
+        return depth > 2 || (depth == 2 && "body".equals(currentKey));
+    }
+
+    /**
+     * @return the nanoseconds, that were spent to turn the parsed rows of all
+     * statements into the values of the results
+     */
+    public long getMaterializeNanos() {
+        long nanos = 0;
+        for (Job job : jobs) {
+            if (job.body != null) {
+                nanos += job.body.getMaterializeNanos();
+            }
+        }
+        return nanos;
+    }
+
+    /**
+     * @return one result per statement in the order of the statements
+     * @throws CypherBatchException if a statement failed
+     * @throws CypherException if the response is incomplete
+     */
+    public List<CypherResult> getResults() throws CypherException {
+        CypherResult[] results = new CypherResult[statementCount];
+        for (Job job : jobs) {
+            if (job.id < 0 || job.id >= statementCount) {
+                throw new CypherException("batch response contains an unknown job id: " + job.id);
+            }
+            if (job.status >= 400 || job.body == null || job.body.getResult() == null || !job.body.isComplete()) {
+                String reason = job.body == null ? null : job.body.message;
+                throw new CypherBatchException(job.id, String.format("Cypher-Exception in statement %d: %s(%s)", job.id, job.body == null ? null : job.body.exception, reason));
+            }
+            results[job.id] = job.body.getResult();
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                throw new CypherBatchException(i, String.format("batch response contains no result for statement %d", i));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public boolean startArray() throws ParseException, IOException {
+        if (inBody()) {
+            currentJob.body.startArray();
+        }
+        depth++;
+        return true;
+    }
+
+    @Override
+    public boolean endArray() throws ParseException, IOException {
+        depth--;
+        if (inBody()) {
+            currentJob.body.endArray();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startObject() throws ParseException, IOException {
+        if (depth == 1) {
+            currentJob = new Job();
+        } else if (inBody()) {
+            currentJob.body.startObject();
+        }
+        depth++;
+        return true;
+    }
+
+    @Override
+    public boolean endObject() throws ParseException, IOException {
+        depth--;
+        if (depth == 1) {
+            jobs.add(currentJob);
+            currentJob = null;
+        } else if (inBody()) {
+            currentJob.body.endObject();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) throws ParseException, IOException {
+        if (depth == 2) {
+            currentKey = key;
+            if ("body".equals(key)) {
+                currentJob.body = new JobBodyHandler();
+                currentJob.body.startJSON();
+            }
+        } else if (inBody()) {
+            currentJob.body.startObjectEntry(key);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() throws ParseException, IOException {
+        if (depth == 2) {
+            currentKey = null;
+        } else if (inBody()) {
+            currentJob.body.endObjectEntry();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) throws ParseException, IOException {
+        if (depth == 2) {
+            if ("id".equals(currentKey) && value instanceof Number) {
+                currentJob.id = ((Number) value).intValue();
+            } else if ("status".equals(currentKey) && value instanceof Number) {
+                currentJob.status = ((Number) value).intValue();
+            }
+        } else if (inBody()) {
+            currentJob.body.primitive(value);
+        }
+        return true;
+    }
+}
@@ -1,6 +1,7 @@
 package de.herschke.neo4j.uplink.ejb.responsehandling;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -13,28 +14,48 @@ import org.json.simple.parser.ParseException;
 /**
  * this {@link ContentHandler} consumes the value of a cell inside a cypher
  * query result
+ * <p>
+ * The cells of skipped columns are passed over without building their values,
+ * the result contains only the values of the other columns.
  *
  * @author rhk
  */
 public class CypherResponseCellsHandler extends AbstractContentHandler {
 
     private int level = 0;
-    private final Stack valueStack = new Stack();
+    private final Stack<Object> valueStack = new Stack<>();
+    private final BitSet skippedColumns;
+    /**
+     * the index of the current cell in the row.
+     */
+    private int cellIndex = 0;
+    /**
+     * the nesting depth inside a skipped cell, 0 if no cell is skipped.
+     */
+    private int skipLevel = 0;
 
-    public CypherResponseCellsHandler() {
+    /**
+     * @param skippedColumns the indexes of the columns, whose cells are
+     * skipped
+     */
+    public CypherResponseCellsHandler(BitSet skippedColumns) {
+        this.skippedColumns = skippedColumns;
         final JSONArray value = new JSONArray();
         consumeValue(value);
         valueStack.push(value);
     }
 
-    public List getResult() {
-        return Collections.unmodifiableList((List) valueStack.pop());
+    public List<?> getResult() {
+        return Collections.unmodifiableList((List<?>) valueStack.pop());
     }
 
     @Override
     public boolean startArray() throws ParseException, IOException {
+        if (startSkipping()) {
+            return true;
+        }
         level++;
-        List array = new JSONArray();
+        JSONArray array = new JSONArray();
         consumeValue(array);
         valueStack.push(array);
         return true;
@@ -42,8 +63,11 @@ public class CypherResponseCellsHandler extends AbstractContentHandler {
 
     @Override
     public boolean startObject() throws ParseException, IOException {
+        if (startSkipping()) {
+            return true;
+        }
         level++;
-        Map object = new JSONObject();
+        JSONObject object = new JSONObject();
         consumeValue(object);
         valueStack.push(object);
         return true;
@@ -52,40 +76,92 @@ public class CypherResponseCellsHandler extends AbstractContentHandler {
     @Override
     public boolean startObjectEntry(String key) throws ParseException, IOException {
         level++;
+        if (skipLevel > 0) {
+            return true;
+        }
         valueStack.push(key);
         return true;
     }
 
     @Override
     public boolean endArray() throws ParseException, IOException {
+        if (endSkipping()) {
+            return true;
+        }
         level--;
         trackBack();
+        if (level == 0) {
+            cellIndex++;
+        }
         return level >= 0;
     }
 
     @Override
     public boolean endObject() throws ParseException, IOException {
+        if (endSkipping()) {
+            return true;
+        }
         level--;
         trackBack();
+        if (level == 0) {
+            cellIndex++;
+        }
         return level >= 0;
     }
 
     @Override
+    @SuppressWarnings("unchecked") // the objects are raw JSONObjects
     public boolean endObjectEntry() throws ParseException, IOException {
         level--;
+        if (skipLevel > 0) {
+            return true;
+        }
         Object value = valueStack.pop();
         Object key = valueStack.pop();
-        Map parent = (Map) valueStack.peek();
+        Map<Object, Object> parent = (Map<Object, Object>) valueStack.peek();
         parent.put(key, value);
         return true;
     }
 
     @Override
     public boolean primitive(Object value) throws ParseException, IOException {
-        consumeValue(value);
+        if (skipLevel > 0) {
+            return true;
+        }
+        if (level == 0) {
+            if (!skippedColumns.get(cellIndex++)) {
+                consumeValue(value);
+            }
+        } else {
+            consumeValue(value);
+        }
         return true;
     }
 
+    /**
+     * @return true, if an array or object starts, that is skipped
+     */
+    private boolean startSkipping() {
+        if (skipLevel > 0 || (level == 0 && skippedColumns.get(cellIndex))) {
+            skipLevel++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true, if an array or object ends, that is skipped
+     */
+    private boolean endSkipping() {
+        if (skipLevel > 0) {
+            if (--skipLevel == 0) {
+                cellIndex++;
+            }
+            return true;
+        }
+        return false;
+    }
+
     private void trackBack() {
         if (valueStack.size() > 1) {
             Object value = valueStack.pop();
@@ -96,13 +172,14 @@ public class CypherResponseCellsHandler extends AbstractContentHandler {
         }
     }
 
+    @SuppressWarnings("unchecked") // the arrays are raw JSONArrays
     private void consumeValue(Object value) {
         if (valueStack.size() == 0) {
             valueStack.push(value);
         } else {
             Object prev = valueStack.peek();
             if (prev instanceof List) {
-                List array = (List) prev;
+                List<Object> array = (List<Object>) prev;
                 array.add(value);
             } else {
                 valueStack.push(value);
@@ -9,9 +9,9 @@ import org.json.simple.parser.ParseException;
  */
 public class CypherResponseColumnsHandler extends AbstractContentHandler {
 
-    private final DefaultCypherResult result;
+    private final CypherResultSink result;
 
-    public CypherResponseColumnsHandler(DefaultCypherResult result) {
+    public CypherResponseColumnsHandler(CypherResultSink result) {
         this.result = result;
     }
 
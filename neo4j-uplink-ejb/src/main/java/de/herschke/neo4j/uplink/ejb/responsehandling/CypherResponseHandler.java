@@ -1,6 +1,9 @@
 package de.herschke.neo4j.uplink.ejb.responsehandling;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
 import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.ParseException;
 
@@ -51,22 +54,130 @@ public class CypherResponseHandler extends DelegatingContentHandler {
      * the data of the response.
      */
     private DefaultCypherResult result;
+    /**
+     * the sink, that receives the columns and rows.
+     */
+    private final CypherResultSink sink;
     private ContentHandler currentContentHandler = null;
     private boolean hasFetchedColumns = false;
     private boolean hasFetchedData = false;
     private boolean fetchingData = false;
+    private long materializeNanos = 0;
+    /**
+     * the columns, that are passed to the sink, or null for all columns.
+     */
+    private Set<String> columns = null;
+    /**
+     * the indexes of the columns of the response, whose cells are skipped.
+     */
+    private final BitSet skippedColumns = new BitSet();
+    private int maxRows = 0;
+    private boolean truncated = false;
+    private int responseColumnCount = 0;
+    /**
+     * passes the columns and rows to the sink and measures the time, that is
+     * spent there.
+     */
+    private final CypherResultSink timingSink = new CypherResultSink() {
+        @Override
+        public void addColumn(String columnName) {
+            int columnIndex = responseColumnCount++;
+            if (columns != null && !columns.contains(columnName)) {
+                skippedColumns.set(columnIndex);
+            } else {
+                getTargetSink().addColumn(columnName);
+            }
+        }
+
+        @Override
+        public boolean addRow(int rowIndex, List<?> rowValues) {
+            long start = System.nanoTime();
+            try {
+                return getTargetSink().addRow(rowIndex, rowValues);
+            } finally {
+                materializeNanos += System.nanoTime() - start;
+            }
+        }
+    };
+
+    /**
+     * creates a handler, that collects the response in a
+     * {@link DefaultCypherResult}.
+     */
+    public CypherResponseHandler() {
+        this.sink = null;
+    }
+
+    /**
+     * creates a handler, that passes the columns and rows to the given sink.
+     * If the sink requests a pause, the handler stops the parser after that
+     * row, so parsing can be resumed later.
+     */
+    public CypherResponseHandler(CypherResultSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * restricts the columns, that are passed to the sink. The cells of the
+     * other columns are skipped.
+     *
+     * @param columns the names of the columns, or null for all columns
+     */
+    public void setColumns(Set<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * limits the count of rows, that are passed to the sink. If the response
+     * has more rows, the parser is stopped at the start of the next row.
+     *
+     * @param maxRows the maximum count of rows, or 0 for all rows
+     */
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return true, if the parser was stopped, because the response has more
+     * rows than the maximum count of rows
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
 
     public DefaultCypherResult getResult() {
+        if (this.result != null) {
+            this.result.releaseInterner();
+        }
         return this.result;
     }
 
+    /**
+     * @return the nanoseconds, that were spent to turn the parsed rows into
+     * the values of the result
+     */
+    public long getMaterializeNanos() {
+        return this.materializeNanos;
+    }
+
+    /**
+     * @return true, if columns and data were completely fetched
+     */
+    public boolean isComplete() {
+        return hasFetchedColumns && hasFetchedData;
+    }
+
     @Override
     public void startJSON() throws ParseException, IOException {
-        this.result = new DefaultCypherResult();
+        this.result = this.sink == null ? new DefaultCypherResult() : null;
         this.currentContentHandler = null;
         this.hasFetchedColumns = false;
         this.hasFetchedData = false;
         this.fetchingData = false;
+        this.materializeNanos = 0;
+        this.responseColumnCount = 0;
+        this.skippedColumns.clear();
+        this.truncated = false;
     }
 
     @Override
@@ -74,10 +185,10 @@ public class CypherResponseHandler extends DelegatingContentHandler {
         if (this.currentContentHandler == null) {
             switch (key) {
                 case "columns":
-                    this.currentContentHandler = new CypherResponseColumnsHandler(result);
+                    this.currentContentHandler = new CypherResponseColumnsHandler(this.timingSink);
                     return true;
                 case "data":
-                    this.currentContentHandler = new CypherResponseRowsHandler(result);
+                    this.currentContentHandler = new CypherResponseRowsHandler(this.timingSink, this.skippedColumns, this.maxRows);
                     return true;
                 default:
                     return true;
@@ -105,12 +216,29 @@ public class CypherResponseHandler extends DelegatingContentHandler {
                 this.hasFetchedColumns = true;
                 this.currentContentHandler = null;
             } else if (this.currentContentHandler instanceof CypherResponseRowsHandler) {
+                CypherResponseRowsHandler rowsHandler = (CypherResponseRowsHandler) this.currentContentHandler;
+                if (rowsHandler.isTruncated()) {
+                    // the maximum count of rows was reached, the rest is not read
+                    this.truncated = true;
+                    if (this.result != null) {
+                        this.result.setTruncated(true);
+                    }
+                    return false;
+                }
+                if (!rowsHandler.isComplete()) {
+                    // the sink requested a pause after the last row
+                    return false;
+                }
                 this.fetchingData = false;
                 this.hasFetchedData = true;
                 this.currentContentHandler = null;
             }
         }
-        return !(hasFetchedColumns && hasFetchedData);
+        return !isComplete();
+    }
+
+    private CypherResultSink getTargetSink() {
+        return this.sink == null ? this.result : this.sink;
     }
 
     @Override
@@ -0,0 +1,55 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import org.json.simple.parser.ParseException;
+
+/**
+ * parses the complete response of a cypher query into a result. A parser is
+ * used for one response only.
+ *
+ * @author rhk
+ */
+public interface CypherResponseParser {
+
+    /**
+     * restricts the result to the given columns, the cells of the other
+     * columns are skipped.
+     *
+     * @param columns the names of the columns, or null for all columns
+     */
+    void setColumns(Set<String> columns);
+
+    /**
+     * limits the count of rows of the result. If the response has more rows,
+     * parsing stops at the start of the next row and the result is marked as
+     * truncated. The rest of the stream is not read.
+     *
+     * @param maxRows the maximum count of rows, or 0 for all rows
+     */
+    void setMaxRows(int maxRows);
+
+    /**
+     * @param stream the utf-8 encoded response
+     * @return the result
+     */
+    CypherResult parse(InputStream stream) throws IOException, ParseException;
+
+    /**
+     * passes the columns and rows of the response to the given sink, instead
+     * of building a result.
+     *
+     * @param stream the utf-8 encoded response
+     * @return true, if the response has more rows than the maximum count of
+     * rows, so the rest of the stream was not read
+     */
+    boolean parse(InputStream stream, CypherResultSink sink) throws IOException, ParseException;
+
+    /**
+     * @return the nanoseconds, that were spent to turn the parsed rows into
+     * the values of the result
+     */
+    long getMaterializeNanos();
+}
@@ -0,0 +1,34 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+/**
+ * creates the {@link CypherResponseParser} by its name.
+ *
+ * @author rhk
+ */
+public final class CypherResponseParsers {
+
+    /**
+     * the name of the parser, that uses the {@link CypherResponseHandler}.
+     */
+    public static final String JSON_SIMPLE = "json-simple";
+    /**
+     * the name of the {@link JacksonCypherResponseParser}.
+     */
+    public static final String JACKSON = "jackson";
+
+    private CypherResponseParsers() {
+    }
+
+    /**
+     * @param name either {@link #JSON_SIMPLE} or {@link #JACKSON}
+     * @return a new parser
+     */
+    public static CypherResponseParser create(String name) {
+        if (name == null || name.trim().length() == 0 || JSON_SIMPLE.equals(name.trim())) {
+            return new JsonSimpleCypherResponseParser();
+        } else if (JACKSON.equals(name.trim())) {
+            return new JacksonCypherResponseParser();
+        }
+        throw new IllegalArgumentException("unknown response parser: " + name);
+    }
+}
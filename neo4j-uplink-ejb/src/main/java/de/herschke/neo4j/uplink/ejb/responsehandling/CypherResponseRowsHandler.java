@@ -1,6 +1,8 @@
 package de.herschke.neo4j.uplink.ejb.responsehandling;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
 import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.ParseException;
 
@@ -10,14 +12,25 @@ import org.json.simple.parser.ParseException;
  */
 public class CypherResponseRowsHandler extends DelegatingContentHandler {
 
-    private final DefaultCypherResult result;
+    private final CypherResultSink result;
+    private final BitSet skippedColumns;
+    private final int maxRows;
+    private boolean truncated = false;
     private int rowIndex;
     private int level = 0;
     private CypherResponseCellsHandler currentCellHandler;
 
-    public CypherResponseRowsHandler(DefaultCypherResult result) {
+    /**
+     * @param skippedColumns the indexes of the columns, whose cells are
+     * skipped
+     * @param maxRows the maximum count of rows, the parser is stopped at the
+     * start of the next row, or 0 for all rows
+     */
+    public CypherResponseRowsHandler(CypherResultSink result, BitSet skippedColumns, int maxRows) {
         this.rowIndex = 0;
         this.result = result;
+        this.skippedColumns = skippedColumns;
+        this.maxRows = maxRows;
     }
 
     @Override
@@ -29,7 +42,12 @@ public class CypherResponseRowsHandler extends DelegatingContentHandler {
     public boolean startArray() throws ParseException, IOException {
         level++;
         if (this.currentCellHandler == null) {
-            this.currentCellHandler = new CypherResponseCellsHandler();
+            if (maxRows > 0 && rowIndex >= maxRows) {
+                // another row starts, it is not read
+                this.truncated = true;
+                return false;
+            }
+            this.currentCellHandler = new CypherResponseCellsHandler(this.skippedColumns);
             return true;
         } else {
             return super.startArray();
@@ -39,12 +57,28 @@ public class CypherResponseRowsHandler extends DelegatingContentHandler {
     @Override
     protected boolean handleStopAt(Token token) {
         if (token == Token.END_ARRAY && this.currentCellHandler != null) {
-            result.setRowValues(this.rowIndex++, this.currentCellHandler.getResult());
+            List<?> rowValues = this.currentCellHandler.getResult();
             this.currentCellHandler = null;
+            return result.addRow(this.rowIndex++, rowValues);
         }
         return true;
     }
 
+    /**
+     * @return true, if the parser was stopped, because there are more rows
+     * than the maximum count of rows
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return true, if the end of the rows array was reached
+     */
+    public boolean isComplete() {
+        return level < 0;
+    }
+
     @Override
     public boolean endArray() throws ParseException, IOException {
         boolean result = super.endArray();
@@ -0,0 +1,21 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import java.util.List;
+
+/**
+ * receives the columns and rows of a cypher response while it is parsed.
+ *
+ * @author rhk
+ */
+public interface CypherResultSink {
+
+    void addColumn(String columnName);
+
+    /**
+     * @param rowIndex the index of the row
+     * @param rowValues the raw values of the row
+     * @return true, if parsing should continue, false if parsing should pause
+     * after this row
+     */
+    boolean addRow(int rowIndex, List<?> rowValues);
+}
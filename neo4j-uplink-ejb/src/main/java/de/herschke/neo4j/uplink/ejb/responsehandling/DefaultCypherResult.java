@@ -1,33 +1,70 @@
 package de.herschke.neo4j.uplink.ejb.responsehandling;
 
 import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.api.GraphEntity;
 import de.herschke.neo4j.uplink.api.Node;
 import de.herschke.neo4j.uplink.api.Relationship;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import org.json.simple.JSONObject;
 
 /**
- * a default implementation of {@link CypherResult}
+ * a default implementation of {@link CypherResult}.
+ * <p>
+ * The cells are stored column by column in {@link ResultColumn}s, that share
+ * the column index of the result. Columns of numbers and booleans keep their
+ * values unboxed, so that the primitive column accessors do not box them. Map
+ * views of a row are only created, when they are requested. Repeated nodes,
+ * relationships and strings share one instance, see {@link CellValueInterner}.
+ * <p>
+ * A result is externalized in the compact format of {@link ResultFormat}: the
+ * names of the columns, the count of rows and the cells column by column.
  *
  * @author rhk
  */
-class DefaultCypherResult implements CypherResult {
+class DefaultCypherResult implements CypherResult, CypherResultSink, Externalizable {
 
-    private static final Pattern nodePattern = Pattern.compile("http://.+/db/data/node/(\\d+)");
-    private static final Pattern relationshipPattern = Pattern.compile("http://.+/db/data/relationship/(\\d+)");
-    private List<String> columns = new ArrayList<>();
-    private List<Map<String, Object>> data = new ArrayList<>();
+    private static final int INITIAL_ROW_CAPACITY = 16;
+    private final List<String> columns = new ArrayList<>();
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    /**
+     * the cells of the result, indexed by column.
+     */
+    private ResultColumn[] columnData = new ResultColumn[0];
+    private int rowCapacity = 0;
+    private int rowCount = 0;
+    private boolean truncated = false;
+    /**
+     * the interned values, while rows are set.
+     */
+    private transient CellValueInterner interner;
+
+    /**
+     * creates an empty result, the constructor is public for
+     * {@link Externalizable}.
+     */
+    public DefaultCypherResult() {
+    }
 
     @Override
     public int getRowCount() {
-        return this.data.size();
+        return this.rowCount;
     }
 
     @Override
@@ -47,14 +84,16 @@ class DefaultCypherResult implements CypherResult {
 
     @Override
     public Object getValue(int rowIndex, int columnIndex) {
-        return getValue(rowIndex, columns.get(columnIndex));
+        checkRowIndex(rowIndex);
+        return columnData[columnIndex].get(rowIndex);
     }
 
     @Override
     public Object getValue(int rowIndex, String columnName) {
-        Map<String, Object> rowData = getRowData(rowIndex);
-        if (rowData.containsKey(columnName)) {
-            return rowData.get(columnName);
+        checkRowIndex(rowIndex);
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            return columnData[columnIndex].get(rowIndex);
         } else {
             return null;
         }
@@ -62,84 +101,393 @@ class DefaultCypherResult implements CypherResult {
 
     @Override
     public List<Object> getColumnValues(int columnIndex) {
-        return getColumnValues(columns.get(columnIndex));
+        if (columnIndex < 0 || columnIndex >= columns.size()) {
+            throw new IndexOutOfBoundsException("Index: " + columnIndex + ", Size: " + columns.size());
+        }
+        return new ColumnView(columnIndex);
     }
 
     @Override
     public List<Object> getColumnValues(String columnName) {
-        List<Object> result = new ArrayList<>();
-        for (Map<String, Object> row : this.data) {
-            result.add(row.get(columnName));
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            return getColumnValues(columnIndex);
+        } else {
+            return Collections.nCopies(rowCount, null);
+        }
+    }
+
+    @Override
+    public long[] getLongColumn(int columnIndex, long nullValue) {
+        ResultColumn column = getColumn(columnIndex);
+        long[] values = new long[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            values[r] = column.getLong(r, nullValue);
         }
-        return Collections.unmodifiableList(result);
+        return values;
+    }
+
+    @Override
+    public long[] getLongColumn(String columnName, long nullValue) {
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            return getLongColumn(columnIndex, nullValue);
+        } else {
+            long[] values = new long[rowCount];
+            Arrays.fill(values, nullValue);
+            return values;
+        }
+    }
+
+    @Override
+    public double[] getDoubleColumn(int columnIndex, double nullValue) {
+        ResultColumn column = getColumn(columnIndex);
+        double[] values = new double[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            values[r] = column.getDouble(r, nullValue);
+        }
+        return values;
+    }
+
+    @Override
+    public double[] getDoubleColumn(String columnName, double nullValue) {
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            return getDoubleColumn(columnIndex, nullValue);
+        } else {
+            double[] values = new double[rowCount];
+            Arrays.fill(values, nullValue);
+            return values;
+        }
+    }
+
+    @Override
+    public boolean[] getBooleanColumn(int columnIndex, boolean nullValue) {
+        ResultColumn column = getColumn(columnIndex);
+        boolean[] values = new boolean[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            values[r] = column.getBoolean(r, nullValue);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean[] getBooleanColumn(String columnName, boolean nullValue) {
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            return getBooleanColumn(columnIndex, nullValue);
+        } else {
+            boolean[] values = new boolean[rowCount];
+            Arrays.fill(values, nullValue);
+            return values;
+        }
+    }
+
+    private ResultColumn getColumn(int columnIndex) {
+        if (columnIndex < 0 || columnIndex >= columns.size()) {
+            throw new IndexOutOfBoundsException("Index: " + columnIndex + ", Size: " + columns.size());
+        }
+        return columnData[columnIndex];
     }
 
     @Override
     public List<Object> getRowValues(int rowIndex) {
-        return Collections.unmodifiableList(new ArrayList(this.data.get(rowIndex).values()));
+        checkRowIndex(rowIndex);
+        return new RowValuesView(rowIndex);
     }
 
     @Override
     public Map<String, Object> getRowData(int rowIndex) {
-        return Collections.unmodifiableMap(this.data.get(rowIndex));
+        checkRowIndex(rowIndex);
+        return new RowView(rowIndex);
     }
 
     @Override
     public List<Map<String, Object>> getAllValues() {
-        return Collections.unmodifiableList(this.data);
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return getRowData(index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
     }
 
     @Override
     public boolean isEmpty() {
-        return this.data.isEmpty();
+        return this.rowCount == 0;
+    }
+
+    @Override
+    public boolean isTruncated() {
+        return this.truncated;
     }
 
-    void addColumn(String columnName) {
+    void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    @Override
+    public void addColumn(String columnName) {
+        this.columnIndexes.put(columnName, this.columns.size());
         this.columns.add(columnName);
+        this.columnData = Arrays.copyOf(this.columnData, this.columns.size());
+        this.columnData[this.columns.size() - 1] = ResultColumn.create(rowCapacity);
+    }
+
+    @Override
+    public boolean addRow(int rowIndex, List<?> rowValues) {
+        setRowValues(rowIndex, rowValues);
+        return true;
     }
 
     void setValueAt(int rowIndex, int columnIndex, Object value) {
-        setValueAt(rowIndex, columns.get(columnIndex), value);
+        ensureRowCapacity(rowIndex + 1);
+        if (interner == null) {
+            interner = new CellValueInterner();
+        }
+        columnData[columnIndex] = columnData[columnIndex].set(rowIndex, interner.toCellValue(value));
+        rowCount = Math.max(rowCount, rowIndex + 1);
+    }
+
+    /**
+     * releases the interned values, once all rows are set. Rows, that are set
+     * later, do not share their values with the rows before.
+     */
+    void releaseInterner() {
+        interner = null;
     }
 
     void setValueAt(int rowIndex, String columnName, Object value) {
-        // ensure capacity
-        for (int i = data.size(); i <= rowIndex; i++) {
-            data.add(new HashMap<String, Object>());
+        Integer columnIndex = columnIndexes.get(columnName);
+        if (columnIndex != null) {
+            setValueAt(rowIndex, columnIndex, value);
         }
-        // get the row for the rowIndex
-        Map<String, Object> row = this.data.get(rowIndex);
-        // set the field...
+    }
+
+    /**
+     * converts a raw cell value into the value, that is stored in a result.
+     * Nodes and relationships are converted into {@link Node} and
+     * {@link Relationship} objects.
+     */
+    static Object toCellValue(Object value) {
         if (value instanceof JSONObject && ((JSONObject) value).containsKey("self")) {
-            String selfUrl = (String) ((JSONObject) value).get("self");
+            Object selfUrl = ((JSONObject) value).get("self");
             // check if it is a node or a relationship
-            if (nodePattern.matcher(selfUrl).matches()) {
-                value = new Node((JSONObject) value);
-            } else if (relationshipPattern.matcher(selfUrl).matches()) {
-                value = new Relationship((JSONObject) value);
+            String type = selfUrl instanceof String ? GraphEntity.getEntityType((String) selfUrl) : null;
+            if (GraphEntity.NODE.equals(type)) {
+                return new Node((JSONObject) value);
+            } else if (GraphEntity.RELATIONSHIP.equals(type)) {
+                return new Relationship((JSONObject) value);
             }
         }
-        row.put(columnName, value);
+        return value;
     }
 
     void setRow(int rowIndex, Map<String, Object> row) {
-        // ensure capacity
-        for (int i = data.size(); i < rowIndex; i++) {
-            data.add(new HashMap<String, Object>());
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            setValueAt(rowIndex, entry.getKey(), entry.getValue());
         }
-        // add the row
-        data.add(row);
+        ensureRowCapacity(rowIndex + 1);
+        rowCount = Math.max(rowCount, rowIndex + 1);
     }
 
-    void setRowValues(int rowIndex, List rowValues) {
-        for (ListIterator it = rowValues.listIterator(); it.hasNext();) {
+    void setRowValues(int rowIndex, List<?> rowValues) {
+        for (ListIterator<?> it = rowValues.listIterator(); it.hasNext();) {
             setValueAt(rowIndex, it.nextIndex(), it.next());
         }
     }
 
+    private void ensureRowCapacity(int capacity) {
+        if (capacity > rowCapacity) {
+            int newCapacity = Math.max(Math.max(INITIAL_ROW_CAPACITY, rowCapacity + (rowCapacity >> 1)), capacity);
+            for (int c = 0; c < columnData.length; c++) {
+                columnData[c].resize(newCapacity);
+            }
+            rowCapacity = newCapacity;
+        }
+    }
+
+    private void checkRowIndex(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            throw new IndexOutOfBoundsException("Index: " + rowIndex + ", Size: " + rowCount);
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(ResultFormat.VERSION);
+        ResultFormat.Output output = new ResultFormat.Output(out);
+        output.writeVarLong(columns.size());
+        for (String column : columns) {
+            output.writeString(column);
+        }
+        output.writeVarLong(rowCount);
+        out.writeBoolean(truncated);
+        for (ResultColumn column : columnData) {
+            column.write(output, rowCount);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int version = in.readByte();
+        if (version != ResultFormat.VERSION) {
+            throw new InvalidObjectException("unsupported version of the result format: " + version);
+        }
+        ResultFormat.Input input = new ResultFormat.Input(in);
+        int columnCount = input.readVarInt();
+        for (int c = 0; c < columnCount; c++) {
+            String column = input.readString();
+            columnIndexes.put(column, columns.size());
+            columns.add(column);
+        }
+        rowCount = input.readVarInt();
+        rowCapacity = rowCount;
+        truncated = in.readBoolean();
+        columnData = new ResultColumn[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            columnData[c] = ResultColumn.read(input, rowCount);
+        }
+    }
+
     @Override
     public Iterator<Map<String, Object>> iterator() {
-        return this.data.iterator();
+        return new Iterator<Map<String, Object>>() {
+            private int rowIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return rowIndex < rowCount;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new RowView(rowIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("a cypher result is read-only");
+            }
+        };
+    }
+
+    /**
+     * a read-only view on the values of a column.
+     */
+    private class ColumnView extends AbstractList<Object> {
+
+        private final int columnIndex;
+
+        ColumnView(int columnIndex) {
+            this.columnIndex = columnIndex;
+        }
+
+        @Override
+        public Object get(int index) {
+            checkRowIndex(index);
+            return columnData[columnIndex].get(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+    }
+
+    /**
+     * a read-only view on the values of a row.
+     */
+    private class RowValuesView extends AbstractList<Object> {
+
+        private final int rowIndex;
+
+        RowValuesView(int rowIndex) {
+            this.rowIndex = rowIndex;
+        }
+
+        @Override
+        public Object get(int index) {
+            return columnData[index].get(rowIndex);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+
+    /**
+     * a read-only map view on a row. The key of the Map is the columnName.
+     */
+    private class RowView extends AbstractMap<String, Object> {
+
+        private final int rowIndex;
+
+        RowView(int rowIndex) {
+            this.rowIndex = rowIndex;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer columnIndex = columnIndexes.get(key);
+            return columnIndex == null ? null : columnData[columnIndex].get(rowIndex);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndexes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int columnIndex = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return columnIndex < columns.size();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, Object> entry = new SimpleImmutableEntry<>(columns.get(columnIndex), columnData[columnIndex].get(rowIndex));
+                            columnIndex++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("a cypher result is read-only");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columns.size();
+                }
+            };
+        }
     }
 
     @Override
@@ -148,7 +496,8 @@ class DefaultCypherResult implements CypherResult {
         int[] columnSizes = new int[getColumnCount()];
         for (int c = 0; c < getColumnCount(); c++) {
             columnSizes[c] = (columns.get(c).length());
-            for (Object rowValue : getColumnValues(c)) {
+            for (int r = 0; r < rowCount; r++) {
+                Object rowValue = columnData[c].get(r);
                 columnSizes[c] = Math.max(columnSizes[c], rowValue == null ? 0 : rowValue.toString().length());
             }
         }
@@ -190,14 +539,14 @@ class DefaultCypherResult implements CypherResult {
         }
         sb.append("\n");
         // print row values
-        for (Map<String, Object> row : data) {
+        for (int r = 0; r < rowCount; r++) {
             for (int i = 0; i < columnSizes.length; i++) {
                 if (i == 0) {
                     sb.append("| ");
                 } else {
                     sb.append(" ");
                 }
-                Object rowValue = row.get(columns.get(i));
+                Object rowValue = columnData[i].get(r);
 
                 String value = "";
                 if (rowValue != null) {
@@ -0,0 +1,181 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * parses the response with the Jackson streaming parser and fills the
+ * {@link DefaultCypherResult} or another {@link CypherResultSink} directly,
+ * without the json-simple handler chain.
+ * <p>
+ * Cells are read into the same values as by the {@link CypherResponseHandler}:
+ * integers as {@link Long}, decimals as {@link Double}, objects as
+ * {@link JSONObject} and arrays as {@link JSONArray}. An integer, that does
+ * not fit in a long, is rejected, as by json-simple. The cells of skipped
+ * columns are passed over without decoding them.
+ *
+ * @author rhk
+ */
+public class JacksonCypherResponseParser implements CypherResponseParser {
+
+    /**
+     * the factory is thread safe and caches the symbol tables of the parsers.
+     * The stream is not closed by the parser, so a truncated response is not
+     * drained, but left to the caller.
+     */
+    private static final JsonFactory FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    private Object[] rowValues = new Object[8];
+    private long materializeNanos = 0;
+    private Set<String> columns = null;
+    private int maxRows = 0;
+    /**
+     * the indexes of the columns of the response, whose cells are skipped.
+     */
+    private final BitSet skippedColumns = new BitSet();
+
+    @Override
+    public void setColumns(Set<String> columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public CypherResult parse(InputStream stream) throws IOException {
+        DefaultCypherResult result = new DefaultCypherResult();
+        result.setTruncated(parse(stream, result));
+        result.releaseInterner();
+        return result;
+    }
+
+    @Override
+    public boolean parse(InputStream stream, CypherResultSink sink) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(stream)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("columns".equals(name)) {
+                    readColumns(parser, token, sink);
+                } else if ("data".equals(name)) {
+                    if (readRows(parser, token, sink)) {
+                        return true;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getMaterializeNanos() {
+        return materializeNanos;
+    }
+
+    private void readColumns(JsonParser parser, JsonToken token, CypherResultSink sink) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY);
+        for (int columnIndex = 0; (token = parser.nextToken()) != JsonToken.END_ARRAY; columnIndex++) {
+            if (token != JsonToken.VALUE_STRING) {
+                throw new IOException("while fetching columns, only strings are allowed!");
+            }
+            String columnName = parser.getText();
+            if (columns != null && !columns.contains(columnName)) {
+                skippedColumns.set(columnIndex);
+            } else {
+                sink.addColumn(columnName);
+            }
+        }
+    }
+
+    /**
+     * @return true, if the rows were truncated at the maximum count of rows
+     */
+    private boolean readRows(JsonParser parser, JsonToken token, CypherResultSink sink) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY);
+        int rowIndex = 0;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.START_ARRAY);
+            if (maxRows > 0 && rowIndex >= maxRows) {
+                // another row starts, it is not read
+                return true;
+            }
+            int columnCount = 0;
+            for (int cellIndex = 0; (token = parser.nextToken()) != JsonToken.END_ARRAY; cellIndex++) {
+                if (token != null && skippedColumns.get(cellIndex)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (columnCount == rowValues.length) {
+                    rowValues = Arrays.copyOf(rowValues, columnCount * 2);
+                }
+                rowValues[columnCount++] = readValue(parser, token);
+            }
+            long start = System.nanoTime();
+            sink.addRow(rowIndex, Arrays.asList(rowValues).subList(0, columnCount));
+            Arrays.fill(rowValues, 0, columnCount, null);
+            materializeNanos += System.nanoTime() - start;
+            rowIndex++;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked") // JSONArray and JSONObject are raw collections
+    private Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null) {
+            throw new JsonParseException("unexpected end of input", parser.getCurrentLocation());
+        }
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    throw new JsonParseException("integer out of range of a long: " + parser.getText(), parser.getCurrentLocation());
+                }
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser, token));
+                }
+                return array;
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.put(name, readValue(parser, parser.nextToken()));
+                }
+                return object;
+            default:
+                throw new JsonParseException("unexpected token: " + token, parser.getCurrentLocation());
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException("expected " + expected + " but was " + actual, parser.getCurrentLocation());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Set;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * parses the response with the json-simple parser and the
+ * {@link CypherResponseHandler}.
+ *
+ * @author rhk
+ */
+class JsonSimpleCypherResponseParser implements CypherResponseParser {
+
+    private CypherResponseHandler handler = null;
+    private Set<String> columns = null;
+    private int maxRows = 0;
+
+    @Override
+    public void setColumns(Set<String> columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public CypherResult parse(InputStream stream) throws IOException, ParseException {
+        handler = new CypherResponseHandler();
+        parseWith(stream, handler);
+        return handler.getResult();
+    }
+
+    @Override
+    public boolean parse(InputStream stream, CypherResultSink sink) throws IOException, ParseException {
+        handler = new CypherResponseHandler(sink);
+        parseWith(stream, handler);
+        return handler.isTruncated();
+    }
+
+    private void parseWith(InputStream stream, CypherResponseHandler handler) throws IOException, ParseException {
+        handler.setColumns(columns);
+        handler.setMaxRows(maxRows);
+        new JSONParser().parse(new InputStreamReader(stream, "UTF-8"), handler);
+    }
+
+    @Override
+    public long getMaterializeNanos() {
+        return handler == null ? 0 : handler.getMaterializeNanos();
+    }
+}
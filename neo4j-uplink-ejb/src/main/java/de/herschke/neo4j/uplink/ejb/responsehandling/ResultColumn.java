@@ -0,0 +1,441 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * the cells of one column of a {@link DefaultCypherResult}.
+ * <p>
+ * A column starts without a type and takes the type of its first value: a
+ * column of {@link Long}, {@link Double} or {@link Boolean} values keeps them
+ * unboxed in a primitive array, with a {@link BitSet} of the rows, that have a
+ * value. A value of another type turns the column into a column of objects, so
+ * that every cell keeps the type, it was parsed with.
+ *
+ * @author rhk
+ */
+abstract class ResultColumn {
+
+    private static final int UNTYPED = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int BOOLEAN = 3;
+    private static final int OBJECT = 4;
+
+    /**
+     * @param capacity the initial count of rows
+     * @return an empty column without a type
+     */
+    static ResultColumn create(int capacity) {
+        return new UntypedColumn(capacity);
+    }
+
+    abstract Object get(int rowIndex);
+
+    /**
+     * sets the value of a row.
+     *
+     * @return this column, or the column, that replaces it, if the value does
+     * not fit the type of this column
+     */
+    abstract ResultColumn set(int rowIndex, Object value);
+
+    /**
+     * changes the count of rows, that this column can store.
+     */
+    abstract void resize(int capacity);
+
+    abstract int capacity();
+
+    /**
+     * writes the type of this column and the values of its first rows.
+     */
+    abstract void write(ResultFormat.Output out, int rowCount) throws IOException;
+
+    /**
+     * reads a column, that was written by {@link #write}.
+     */
+    static ResultColumn read(ResultFormat.Input in, int rowCount) throws IOException, ClassNotFoundException {
+        int type = in.readByte();
+        switch (type) {
+            case UNTYPED:
+                return new UntypedColumn(rowCount);
+            case LONG:
+                return LongColumn.read(in, rowCount);
+            case DOUBLE:
+                return DoubleColumn.read(in, rowCount);
+            case BOOLEAN:
+                return BooleanColumn.read(in, rowCount);
+            case OBJECT:
+                return ObjectColumn.read(in, rowCount);
+            default:
+                throw new StreamCorruptedException("unknown column type: " + type);
+        }
+    }
+
+    long getLong(int rowIndex, long nullValue) {
+        Object value = get(rowIndex);
+        if (value == null) {
+            return nullValue;
+        }
+        return toNumber(value).longValue();
+    }
+
+    double getDouble(int rowIndex, double nullValue) {
+        Object value = get(rowIndex);
+        if (value == null) {
+            return nullValue;
+        }
+        return toNumber(value).doubleValue();
+    }
+
+    boolean getBoolean(int rowIndex, boolean nullValue) {
+        Object value = get(rowIndex);
+        if (value == null) {
+            return nullValue;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new ClassCastException(String.format("the value '%s' is not a boolean", value));
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        throw new ClassCastException(String.format("the value '%s' is not a number", value));
+    }
+
+    /**
+     * @return a column of objects with the values of this column
+     */
+    ResultColumn toObjectColumn() {
+        ObjectColumn column = new ObjectColumn(capacity());
+        for (int r = 0; r < capacity(); r++) {
+            column.values[r] = get(r);
+        }
+        return column;
+    }
+
+    /**
+     * a column, that has no value yet.
+     */
+    private static class UntypedColumn extends ResultColumn {
+
+        private int capacity;
+
+        UntypedColumn(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        Object get(int rowIndex) {
+            return null;
+        }
+
+        @Override
+        ResultColumn set(int rowIndex, Object value) {
+            if (value == null) {
+                return this;
+            }
+            ResultColumn column;
+            if (value instanceof Long) {
+                column = new LongColumn(capacity);
+            } else if (value instanceof Double) {
+                column = new DoubleColumn(capacity);
+            } else if (value instanceof Boolean) {
+                column = new BooleanColumn(capacity);
+            } else {
+                column = new ObjectColumn(capacity);
+            }
+            return column.set(rowIndex, value);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        void write(ResultFormat.Output out, int rowCount) throws IOException {
+            out.writeByte(UNTYPED);
+        }
+
+        @Override
+        int capacity() {
+            return capacity;
+        }
+    }
+
+    /**
+     * a column of primitive values. A row without value is not set in
+     * {@link #present}.
+     */
+    private abstract static class PrimitiveColumn extends ResultColumn {
+
+        final BitSet present = new BitSet();
+
+        @Override
+        final ResultColumn set(int rowIndex, Object value) {
+            if (value == null) {
+                present.clear(rowIndex);
+                return this;
+            }
+            if (!setPrimitive(rowIndex, value)) {
+                return toObjectColumn().set(rowIndex, value);
+            }
+            present.set(rowIndex);
+            return this;
+        }
+
+        /**
+         * @return false, if the value does not fit this column
+         */
+        abstract boolean setPrimitive(int rowIndex, Object value);
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+
+        private long[] values;
+
+        LongColumn(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        @Override
+        Object get(int rowIndex) {
+            return present.get(rowIndex) ? (Object) values[rowIndex] : null;
+        }
+
+        @Override
+        boolean setPrimitive(int rowIndex, Object value) {
+            if (value instanceof Long) {
+                values[rowIndex] = (Long) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        long getLong(int rowIndex, long nullValue) {
+            return present.get(rowIndex) ? values[rowIndex] : nullValue;
+        }
+
+        /**
+         * writes the differences between the values, that are small for
+         * ascending ids.
+         */
+        @Override
+        void write(ResultFormat.Output out, int rowCount) throws IOException {
+            out.writeByte(LONG);
+            BitSet rows = present.get(0, rowCount);
+            out.writeBits(rows);
+            long previous = 0;
+            for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+                out.writeZigZag(values[r] - previous);
+                previous = values[r];
+            }
+        }
+
+        static LongColumn read(ResultFormat.Input in, int rowCount) throws IOException {
+            LongColumn column = new LongColumn(rowCount);
+            column.present.or(in.readBits());
+            long previous = 0;
+            for (int r = column.present.nextSetBit(0); r >= 0 && r < rowCount; r = column.present.nextSetBit(r + 1)) {
+                previous += in.readZigZag();
+                column.values[r] = previous;
+            }
+            return column;
+        }
+
+        @Override
+        double getDouble(int rowIndex, double nullValue) {
+            return present.get(rowIndex) ? values[rowIndex] : nullValue;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            this.values = new double[capacity];
+        }
+
+        @Override
+        Object get(int rowIndex) {
+            return present.get(rowIndex) ? (Object) values[rowIndex] : null;
+        }
+
+        @Override
+        boolean setPrimitive(int rowIndex, Object value) {
+            if (value instanceof Double) {
+                values[rowIndex] = (Double) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        long getLong(int rowIndex, long nullValue) {
+            return present.get(rowIndex) ? (long) values[rowIndex] : nullValue;
+        }
+
+        @Override
+        double getDouble(int rowIndex, double nullValue) {
+            return present.get(rowIndex) ? values[rowIndex] : nullValue;
+        }
+
+        @Override
+        void write(ResultFormat.Output out, int rowCount) throws IOException {
+            out.writeByte(DOUBLE);
+            BitSet rows = present.get(0, rowCount);
+            out.writeBits(rows);
+            for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+                out.writeDouble(values[r]);
+            }
+        }
+
+        static DoubleColumn read(ResultFormat.Input in, int rowCount) throws IOException {
+            DoubleColumn column = new DoubleColumn(rowCount);
+            column.present.or(in.readBits());
+            for (int r = column.present.nextSetBit(0); r >= 0 && r < rowCount; r = column.present.nextSetBit(r + 1)) {
+                column.values[r] = in.readDouble();
+            }
+            return column;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    private static class BooleanColumn extends PrimitiveColumn {
+
+        private boolean[] values;
+
+        BooleanColumn(int capacity) {
+            this.values = new boolean[capacity];
+        }
+
+        @Override
+        Object get(int rowIndex) {
+            return present.get(rowIndex) ? (Object) values[rowIndex] : null;
+        }
+
+        @Override
+        boolean setPrimitive(int rowIndex, Object value) {
+            if (value instanceof Boolean) {
+                values[rowIndex] = (Boolean) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        boolean getBoolean(int rowIndex, boolean nullValue) {
+            return present.get(rowIndex) ? values[rowIndex] : nullValue;
+        }
+
+        @Override
+        void write(ResultFormat.Output out, int rowCount) throws IOException {
+            out.writeByte(BOOLEAN);
+            out.writeBits(present.get(0, rowCount));
+            BitSet trueRows = new BitSet(rowCount);
+            for (int r = present.nextSetBit(0); r >= 0 && r < rowCount; r = present.nextSetBit(r + 1)) {
+                trueRows.set(r, values[r]);
+            }
+            out.writeBits(trueRows);
+        }
+
+        static BooleanColumn read(ResultFormat.Input in, int rowCount) throws IOException {
+            BooleanColumn column = new BooleanColumn(rowCount);
+            column.present.or(in.readBits());
+            BitSet trueRows = in.readBits();
+            for (int r = trueRows.nextSetBit(0); r >= 0 && r < rowCount; r = trueRows.nextSetBit(r + 1)) {
+                column.values[r] = true;
+            }
+            return column;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    private static class ObjectColumn extends ResultColumn {
+
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        Object get(int rowIndex) {
+            return values[rowIndex];
+        }
+
+        @Override
+        ResultColumn set(int rowIndex, Object value) {
+            values[rowIndex] = value;
+            return this;
+        }
+
+        @Override
+        ResultColumn toObjectColumn() {
+            return this;
+        }
+
+        @Override
+        void write(ResultFormat.Output out, int rowCount) throws IOException {
+            out.writeByte(OBJECT);
+            for (int r = 0; r < rowCount; r++) {
+                out.writeValue(values[r]);
+            }
+        }
+
+        static ObjectColumn read(ResultFormat.Input in, int rowCount) throws IOException, ClassNotFoundException {
+            ObjectColumn column = new ObjectColumn(rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                column.values[r] = in.readValue();
+            }
+            return column;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+    }
+}
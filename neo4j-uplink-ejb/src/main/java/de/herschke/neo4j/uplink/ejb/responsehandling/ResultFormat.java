@@ -0,0 +1,385 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.GraphEntity;
+import de.herschke.neo4j.uplink.api.Node;
+import de.herschke.neo4j.uplink.api.Relationship;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * the compact binary format, in that a {@link DefaultCypherResult} is
+ * externalized.
+ * <p>
+ * Numbers are written as variable length integers. Every string is written
+ * once and then referred to by its index in the table of strings, that were
+ * written before. A cell is written as tag and value, a node or relationship
+ * as its id and the url of the server, and only once per result: later
+ * occurrences refer to it by id. The urls within an entity are written
+ * relative to the url of the entity or as url of another entity.
+ *
+ * @author rhk
+ */
+final class ResultFormat {
+
+    static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int NULL = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int TRUE = 3;
+    private static final int FALSE = 4;
+    private static final int STRING = 5;
+    private static final int LIST = 6;
+    private static final int MAP = 7;
+    private static final int NODE = 8;
+    private static final int NODE_REF = 9;
+    private static final int RELATIONSHIP = 10;
+    private static final int RELATIONSHIP_REF = 11;
+    private static final int SELF_URL = 12;
+    private static final int ENTITY_URL = 13;
+    private static final int OBJECT = 14;
+
+    private ResultFormat() {
+    }
+
+    /**
+     * writes the values of one result.
+     */
+    static final class Output {
+
+        private final ObjectOutput out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Set<Long> nodes = new HashSet<>();
+        private final Set<Long> relationships = new HashSet<>();
+
+        Output(ObjectOutput out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            out.writeByte(value);
+        }
+
+        void writeDouble(double value) throws IOException {
+            out.writeDouble(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        /**
+         * writes a signed number, so that small negative numbers take few
+         * bytes as well.
+         */
+        void writeZigZag(long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeBits(BitSet bits) throws IOException {
+            long[] words = bits.toLongArray();
+            writeVarLong(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        /**
+         * writes the index of a string, that was written before, or 0 and the
+         * string itself.
+         */
+        void writeString(String value) throws IOException {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(index + 1);
+            } else {
+                strings.put(value, strings.size());
+                byte[] bytes = value.getBytes(UTF8);
+                writeVarLong(0);
+                writeVarLong(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                writeZigZag((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Node) {
+                writeEntity((Node) value, nodes, NODE, NODE_REF);
+            } else if (value instanceof Relationship) {
+                writeEntity((Relationship) value, relationships, RELATIONSHIP, RELATIONSHIP_REF);
+            } else if (value instanceof JSONArray) {
+                JSONArray list = (JSONArray) value;
+                out.writeByte(LIST);
+                writeVarLong(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof JSONObject && hasStringKeys((JSONObject) value)) {
+                out.writeByte(MAP);
+                writeMap((JSONObject) value);
+            } else {
+                out.writeByte(OBJECT);
+                out.writeObject(value);
+            }
+        }
+
+        private static boolean hasStringKeys(Map<?, ?> map) {
+            for (Object key : map.keySet()) {
+                if (!(key instanceof String)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException {
+            writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString((String) entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeEntity(GraphEntity entity, Set<Long> written, int tag, int refTag) throws IOException {
+            long id = entity.getId();
+            if (!written.add(id)) {
+                out.writeByte(refTag);
+                writeVarLong(id);
+                return;
+            }
+            Map<String, Object> map = entity.asMap();
+            String self = (String) map.get("self");
+            out.writeByte(tag);
+            writeVarLong(id);
+            writeString(urlPrefix(self));
+            writeVarLong(map.size() - 1);
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                if ("self".equals(entry.getKey())) {
+                    continue;
+                }
+                writeString(entry.getKey());
+                Object value = entry.getValue();
+                if (value instanceof String && ((String) value).startsWith(self)) {
+                    out.writeByte(SELF_URL);
+                    writeString(((String) value).substring(self.length()));
+                } else if (isEntityUrl(value)) {
+                    out.writeByte(ENTITY_URL);
+                    writeString(urlPrefix((String) value));
+                    writeVarLong(GraphEntity.parseId((String) value));
+                } else {
+                    writeValue(value);
+                }
+            }
+        }
+
+        /**
+         * @return true, if the value is the url of an entity, that is written
+         * as url and id without loss
+         */
+        private static boolean isEntityUrl(Object value) {
+            if (!(value instanceof String) || GraphEntity.getEntityType((String) value) == null) {
+                return false;
+            }
+            String url = (String) value;
+            return url.equals(urlPrefix(url) + GraphEntity.parseId(url));
+        }
+
+        /**
+         * @return the url of an entity without its id
+         */
+        private static String urlPrefix(String url) {
+            return url.substring(0, url.lastIndexOf('/') + 1);
+        }
+    }
+
+    /**
+     * reads the values of one result.
+     */
+    static final class Input {
+
+        private final ObjectInput in;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Long, Node> nodes = new HashMap<>();
+        private final Map<Long, Relationship> relationships = new HashMap<>();
+
+        Input(ObjectInput in) {
+            this.in = in;
+        }
+
+        int readByte() throws IOException {
+            return in.readByte();
+        }
+
+        double readDouble() throws IOException {
+            return in.readDouble();
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("variable length number is too long");
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("count is out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        BitSet readBits() throws IOException {
+            long[] words = new long[readVarInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return BitSet.valueOf(words);
+        }
+
+        String readString() throws IOException {
+            int index = readVarInt();
+            if (index == 0) {
+                byte[] bytes = new byte[readVarInt()];
+                in.readFully(bytes);
+                String value = new String(bytes, UTF8);
+                strings.add(value);
+                return value;
+            }
+            if (index > strings.size()) {
+                throw new StreamCorruptedException("unknown string: " + index);
+            }
+            return strings.get(index - 1);
+        }
+
+        Object readValue() throws IOException, ClassNotFoundException {
+            return readValue(in.readByte());
+        }
+
+        private Object readValue(int tag) throws IOException, ClassNotFoundException {
+            switch (tag) {
+                case NULL:
+                    return null;
+                case LONG:
+                    return readZigZag();
+                case DOUBLE:
+                    return in.readDouble();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case STRING:
+                    return readString();
+                case LIST:
+                    return readList();
+                case MAP:
+                    return readMap();
+                case NODE:
+                    Node node = new Node(readEntity());
+                    nodes.put(node.getId(), node);
+                    return node;
+                case NODE_REF:
+                    return readReference(nodes);
+                case RELATIONSHIP:
+                    Relationship relationship = new Relationship(readEntity());
+                    relationships.put(relationship.getId(), relationship);
+                    return relationship;
+                case RELATIONSHIP_REF:
+                    return readReference(relationships);
+                case OBJECT:
+                    return in.readObject();
+                default:
+                    throw new StreamCorruptedException("unknown tag: " + tag);
+            }
+        }
+
+        @SuppressWarnings("unchecked") // JSONArray is a raw ArrayList
+        private JSONArray readList() throws IOException, ClassNotFoundException {
+            int size = readVarInt();
+            JSONArray list = new JSONArray();
+            for (int i = 0; i < size; i++) {
+                list.add(readValue());
+            }
+            return list;
+        }
+
+        @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+        private JSONObject readMap() throws IOException, ClassNotFoundException {
+            int size = readVarInt();
+            JSONObject map = new JSONObject();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        private <E extends GraphEntity> E readReference(Map<Long, E> entities) throws IOException {
+            long id = readVarLong();
+            E entity = entities.get(id);
+            if (entity == null) {
+                throw new StreamCorruptedException("reference to unknown entity: " + id);
+            }
+            return entity;
+        }
+
+        @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+        private JSONObject readEntity() throws IOException, ClassNotFoundException {
+            long id = readVarLong();
+            String self = readString() + id;
+            int size = readVarInt();
+            JSONObject entity = new JSONObject();
+            entity.put("self", self);
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                int tag = in.readByte();
+                if (tag == SELF_URL) {
+                    entity.put(key, self + readString());
+                } else if (tag == ENTITY_URL) {
+                    entity.put(key, readString() + readVarLong());
+                } else {
+                    entity.put(key, readValue(tag));
+                }
+            }
+            return entity;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+
+/**
+ * signals, that a row cannot be mapped onto the requested class. The
+ * {@link CypherException} is passed as cause through the parser.
+ *
+ * @author rhk
+ */
+public class ResultMappingException extends RuntimeException {
+
+    public ResultMappingException(CypherException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized CypherException getCause() {
+        return (CypherException) super.getCause();
+    }
+}
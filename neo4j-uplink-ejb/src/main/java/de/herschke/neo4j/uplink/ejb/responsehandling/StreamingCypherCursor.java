@@ -0,0 +1,171 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherCursor;
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * a {@link CypherCursor} that parses the rows of a cypher response lazily from
+ * the response stream. The parser is paused after each row and resumed, when
+ * the next row is requested, so only one row is kept in memory.
+ * <p>
+ * If the cursor is closed before the last row, the response is aborted
+ * instead of reading the remaining rows, so the connection is not reused.
+ *
+ * @author rhk
+ */
+public class StreamingCypherCursor implements CypherCursor, CypherResultSink {
+
+    private static final Logger LOG = Logger.getLogger(StreamingCypherCursor.class.getName());
+    private final InputStream stream;
+    private final Runnable abort;
+    private final Reader reader;
+    private final JSONParser parser = new JSONParser();
+    private final CypherResponseHandler handler = new CypherResponseHandler(this);
+    private final List<String> columns = new ArrayList<>();
+    private boolean started = false;
+    private boolean closed = false;
+    private int rowIndex = -1;
+    private List<Object> currentRow;
+    private List<Object> pendingRow;
+
+    public StreamingCypherCursor(InputStream stream) throws IOException {
+        this(stream, null);
+    }
+
+    /**
+     * @param stream the stream of the response
+     * @param abort aborts the response, if the cursor is closed before the
+     * last row, or null, if the stream is just closed then
+     */
+    public StreamingCypherCursor(InputStream stream, Runnable abort) throws IOException {
+        this.stream = stream;
+        this.abort = abort;
+        this.reader = new InputStreamReader(stream, "UTF-8");
+    }
+
+    @Override
+    public void addColumn(String columnName) {
+        this.columns.add(columnName);
+    }
+
+    @Override
+    public boolean addRow(int rowIndex, List<?> rowValues) {
+        List<Object> row = new ArrayList<>(rowValues.size());
+        for (Object value : rowValues) {
+            row.add(DefaultCypherResult.toCellValue(value));
+        }
+        this.pendingRow = row;
+        // pause the parser, until the next row is requested
+        return false;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        if (!started) {
+            // the columns precede the data, so fetch the first row
+            try {
+                fetch();
+            } catch (CypherException ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        }
+        return Collections.unmodifiableList(this.columns);
+    }
+
+    @Override
+    public boolean next() throws CypherException {
+        this.currentRow = null;
+        if (pendingRow == null && !closed) {
+            fetch();
+        }
+        if (pendingRow == null) {
+            close();
+            return false;
+        }
+        this.currentRow = pendingRow;
+        this.pendingRow = null;
+        this.rowIndex++;
+        return true;
+    }
+
+    private void fetch() throws CypherException {
+        if (closed || handler.isComplete()) {
+            return;
+        }
+        try {
+            parser.parse(reader, handler, started);
+            started = true;
+        } catch (IOException | ParseException ex) {
+            close();
+            throw new CypherException("an unparseable response was retrieved: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public int getRowIndex() {
+        return rowIndex;
+    }
+
+    @Override
+    public Object getValue(int columnIndex) {
+        return getCurrentRow().get(columnIndex);
+    }
+
+    @Override
+    public Object getValue(String columnName) {
+        int columnIndex = columns.indexOf(columnName);
+        return columnIndex < 0 ? null : getCurrentRow().get(columnIndex);
+    }
+
+    @Override
+    public Map<String, Object> getRowData() {
+        List<Object> row = getCurrentRow();
+        Map<String, Object> rowData = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            rowData.put(columns.get(i), row.get(i));
+        }
+        return Collections.unmodifiableMap(rowData);
+    }
+
+    @Override
+    public List<Object> getRowValues() {
+        return Collections.unmodifiableList(getCurrentRow());
+    }
+
+    private List<Object> getCurrentRow() {
+        if (currentRow == null) {
+            throw new IllegalStateException("the cursor is not positioned on a row");
+        }
+        return currentRow;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            pendingRow = null;
+            if (abort != null && !handler.isComplete()) {
+                // closing would drain the rest of the rows from the connection
+                abort.run();
+            }
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "cannot close response stream", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package de.herschke.neo4j.uplink.ejb.routing;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * a Neo4j Server, that requests are routed to. It counts the requests in
+ * flight and keeps the mean latency of its responses, so the
+ * {@link EndpointRouter} can pick the least loaded replica.
+ * <p>
+ * An endpoint is ejected from the routing after consecutive connection
+ * failures or a failed health check, and restored, when a health check
+ * succeeds again or the server responds to a request, that was sent before.
+ *
+ * @author rhk
+ */
+public class Endpoint {
+
+    private static final Logger LOG = Logger.getLogger(Endpoint.class.getName());
+    /**
+     * the weight of the latest response in the mean latency.
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+    /**
+     * the HA status of a replica relative to its service root, it responds
+     * with 200, only if the instance is available in the cluster.
+     */
+    private static final String HA_AVAILABLE_PATH = "../manage/server/ha/available";
+    private final String url;
+    private final WebResource resource;
+    private final WebResource healthCheckResource;
+    private final int failureThreshold;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong ejectionCount = new AtomicLong();
+    private final AtomicBoolean available = new AtomicBoolean(true);
+    private volatile double meanLatencyNanos = 0;
+
+    /**
+     * creates the endpoint of the master, its health check requests the
+     * service root.
+     *
+     * @see #Endpoint(String, Client, int, int, boolean)
+     */
+    public Endpoint(String url, Client client, int healthCheckTimeout, int failureThreshold) {
+        this(url, client, healthCheckTimeout, failureThreshold, false);
+    }
+
+    /**
+     * @param url the url of the server in the format http://host:port/db/data
+     * @param client the client, that sends the requests
+     * @param healthCheckTimeout the connect and read timeout of a health check
+     * in milliseconds
+     * @param failureThreshold the count of consecutive connection failures,
+     * after which the endpoint is ejected, or 0, if failures never eject it,
+     * e.g. because no health check would restore it
+     * @param replica true, if the health check requests the HA status
+     * /db/manage/server/ha/available instead of the service root, which every
+     * instance answers, even if it is not available in the cluster
+     */
+    public Endpoint(String url, Client client, int healthCheckTimeout, int failureThreshold, boolean replica) {
+        this.url = url;
+        this.resource = client.resource(url);
+        this.healthCheckResource = replica ? client.resource(haAvailableURI(url)) : client.resource(url);
+        this.healthCheckResource.setProperty(ClientConfig.PROPERTY_CONNECT_TIMEOUT, healthCheckTimeout);
+        this.healthCheckResource.setProperty(ClientConfig.PROPERTY_READ_TIMEOUT, healthCheckTimeout);
+        this.failureThreshold = failureThreshold;
+    }
+
+    private static URI haAvailableURI(String url) {
+        return URI.create(url.endsWith("/") ? url : url + "/").resolve(HA_AVAILABLE_PATH);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public WebResource getResource() {
+        return resource;
+    }
+
+    /**
+     * a request to this endpoint is started.
+     */
+    public void acquire() {
+        inFlight.incrementAndGet();
+        requestCount.incrementAndGet();
+    }
+
+    /**
+     * a request to this endpoint is finished.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * wraps the given response stream, so the request is finished, when the
+     * stream is closed.
+     */
+    public InputStream releaseOnClose(InputStream stream) {
+        return new FilterInputStream(stream) {
+            private final AtomicBoolean released = new AtomicBoolean(false);
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * the server responded to a request, whatever the status was, so an
+     * ejected endpoint is restored.
+     *
+     * @param nanos the nanoseconds until the response status was received
+     */
+    public void responded(long nanos) {
+        if (available.get()) {
+            consecutiveFailures.set(0);
+        } else {
+            restore();
+        }
+        // concurrent updates may get lost, that is good enough for a mean
+        double mean = meanLatencyNanos;
+        meanLatencyNanos = mean == 0 ? nanos : mean + LATENCY_WEIGHT * (nanos - mean);
+    }
+
+    /**
+     * a request failed without a response, the endpoint is ejected, if too
+     * many requests failed in a row.
+     */
+    public void failed() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && failureThreshold > 0) {
+            eject(consecutiveFailures.get() + " requests failed in a row");
+        }
+    }
+
+    /**
+     * requests the service root or the HA status of the server and ejects or
+     * restores the endpoint.
+     */
+    public void checkHealth() {
+        String failure;
+        try {
+            ClientResponse response = healthCheckResource.accept(MediaType.APPLICATION_JSON_TYPE, MediaType.TEXT_PLAIN_TYPE).get(ClientResponse.class);
+            response.close();
+            failure = response.getStatus() == 200 ? null : "health check responded with status " + response.getStatus();
+        } catch (ClientHandlerException ex) {
+            failure = "health check failed: " + ex.getMessage();
+        }
+        if (failure == null) {
+            restore();
+        } else {
+            eject(failure);
+        }
+    }
+
+    void eject(String reason) {
+        if (available.compareAndSet(true, false)) {
+            ejectionCount.incrementAndGet();
+            LOG.log(Level.WARNING, "endpoint {0} is ejected, {1}", new Object[]{url, reason});
+        }
+    }
+
+    void restore() {
+        consecutiveFailures.set(0);
+        if (available.compareAndSet(false, true)) {
+            LOG.log(Level.INFO, "endpoint {0} is restored", url);
+        }
+    }
+
+    /**
+     * @return true, if requests are routed to this endpoint
+     */
+    public boolean isAvailable() {
+        return available.get();
+    }
+
+    /**
+     * @return the expected time until a new request is answered, relative to
+     * the other endpoints: the requests in flight, including the new one,
+     * weighted with the mean latency
+     */
+    double getLoad() {
+        return (inFlight.get() + 1) * Math.max(meanLatencyNanos, 1.0);
+    }
+
+    int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    long getEjectionCount() {
+        return ejectionCount.get();
+    }
+
+    double getMeanLatencyNanos() {
+        return meanLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,178 @@
+package de.herschke.neo4j.uplink.ejb.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * routes requests to the master of a Neo4j HA cluster or to one of its read
+ * replicas.
+ * <p>
+ * Modifying requests are sent to the master. Reading requests are sent to the
+ * available replica with the least load, i.e. the requests in flight weighted
+ * with the mean latency of the replica. Replicas with the same load are picked
+ * in turns. If no replica is available, or none is configured, reads are sent
+ * to the master, too.
+ *
+ * @author rhk
+ */
+public class EndpointRouter implements EndpointRouterMXBean {
+
+    private static final Logger LOG = Logger.getLogger(EndpointRouter.class.getName());
+    private final Endpoint master;
+    private final List<Endpoint> replicas;
+    private final ExecutorService healthCheckExecutor;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * creates a router, that checks the health of the endpoints one after
+     * another.
+     *
+     * @see #EndpointRouter(Endpoint, List, ExecutorService)
+     */
+    public EndpointRouter(Endpoint master, List<Endpoint> replicas) {
+        this(master, replicas, null);
+    }
+
+    /**
+     * @param master the endpoint, that receives the modifying requests
+     * @param replicas the endpoints, that receive the reading requests
+     * @param healthCheckExecutor the executor, that checks the health of the
+     * endpoints concurrently, so a hanging endpoint does not delay the checks
+     * of the others, or null, if they are checked one after another
+     */
+    public EndpointRouter(Endpoint master, List<Endpoint> replicas, ExecutorService healthCheckExecutor) {
+        this.master = master;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.healthCheckExecutor = healthCheckExecutor;
+    }
+
+    public Endpoint getMaster() {
+        return master;
+    }
+
+    public List<Endpoint> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @param read true, if the request does not modify the graph
+     * @return the endpoint, the request is sent to
+     */
+    public Endpoint select(boolean read) {
+        if (!read || replicas.isEmpty()) {
+            return master;
+        }
+        int size = replicas.size();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        Endpoint selected = null;
+        double lowestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint replica = replicas.get((start + i) % size);
+            if (replica.isAvailable()) {
+                double load = replica.getLoad();
+                if (load < lowestLoad) {
+                    selected = replica;
+                    lowestLoad = load;
+                }
+            }
+        }
+        return selected == null ? master : selected;
+    }
+
+    @Override
+    public void checkHealth() {
+        if (healthCheckExecutor == null) {
+            for (Endpoint endpoint : getEndpoints()) {
+                endpoint.checkHealth();
+            }
+            return;
+        }
+        List<Future<?>> checks = new ArrayList<>(replicas.size() + 1);
+        for (final Endpoint endpoint : getEndpoints()) {
+            checks.add(healthCheckExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    endpoint.checkHealth();
+                }
+            }));
+        }
+        // the checks are bounded by the health check timeout, waiting for them
+        // keeps the next checks from overlapping
+        for (Future<?> check : checks) {
+            try {
+                check.get();
+            } catch (ExecutionException ex) {
+                LOG.log(Level.WARNING, "health check failed", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String getMasterUrl() {
+        return master.getUrl();
+    }
+
+    @Override
+    public Map<String, Boolean> getAvailableEndpoints() {
+        Map<String, Boolean> available = new LinkedHashMap<>();
+        for (Endpoint endpoint : getEndpoints()) {
+            available.put(endpoint.getUrl(), endpoint.isAvailable());
+        }
+        return available;
+    }
+
+    @Override
+    public Map<String, Integer> getInFlightRequests() {
+        Map<String, Integer> inFlight = new LinkedHashMap<>();
+        for (Endpoint endpoint : getEndpoints()) {
+            inFlight.put(endpoint.getUrl(), endpoint.getInFlightRequests());
+        }
+        return inFlight;
+    }
+
+    @Override
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Endpoint endpoint : getEndpoints()) {
+            counts.put(endpoint.getUrl(), endpoint.getRequestCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencies() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        for (Endpoint endpoint : getEndpoints()) {
+            latencies.put(endpoint.getUrl(), endpoint.getMeanLatencyNanos() / 1000000.0);
+        }
+        return latencies;
+    }
+
+    @Override
+    public long getEjectionCount() {
+        long count = 0;
+        for (Endpoint endpoint : getEndpoints()) {
+            count += endpoint.getEjectionCount();
+        }
+        return count;
+    }
+
+    private List<Endpoint> getEndpoints() {
+        List<Endpoint> endpoints = new ArrayList<>(replicas.size() + 1);
+        endpoints.add(master);
+        endpoints.addAll(replicas);
+        return endpoints;
+    }
+}
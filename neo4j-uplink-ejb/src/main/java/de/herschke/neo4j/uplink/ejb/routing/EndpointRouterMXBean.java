@@ -0,0 +1,49 @@
+package de.herschke.neo4j.uplink.ejb.routing;
+
+import java.util.Map;
+
+/**
+ * the state of the endpoints, as exposed via JMX. All maps are keyed by the
+ * url of the endpoint.
+ *
+ * @author rhk
+ */
+public interface EndpointRouterMXBean {
+
+    /**
+     * @return the url of the master, that receives all modifying requests
+     */
+    String getMasterUrl();
+
+    /**
+     * @return true for each endpoint, that receives requests, false for each
+     * ejected endpoint
+     */
+    Map<String, Boolean> getAvailableEndpoints();
+
+    /**
+     * @return the count of requests, that are currently in flight
+     */
+    Map<String, Integer> getInFlightRequests();
+
+    /**
+     * @return the count of requests, that were sent
+     */
+    Map<String, Long> getRequestCounts();
+
+    /**
+     * @return the mean latency in milliseconds until the response status is
+     * received, recent requests are weighted more
+     */
+    Map<String, Double> getMeanLatencies();
+
+    /**
+     * @return the count of ejections of all endpoints
+     */
+    long getEjectionCount();
+
+    /**
+     * checks the health of all endpoints now.
+     */
+    void checkHealth();
+}
@@ -0,0 +1,30 @@
+package de.herschke.neo4j.uplink.ejb.routing;
+
+import java.util.regex.Pattern;
+
+/**
+ * classifies cypher queries as reading or modifying the graph. The
+ * classification is conservative: a query is rather considered as modifying,
+ * than not.
+ *
+ * @author rhk
+ */
+public final class QueryClassifier {
+
+    /**
+     * the clauses, that modify the graph. Literals are not excluded, so a
+     * query, that mentions such a clause in a string, is considered as
+     * modifying, too.
+     */
+    private static final Pattern MODIFYING_CLAUSE = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE|RELATE|FOREACH)\\b", Pattern.CASE_INSENSITIVE);
+
+    private QueryClassifier() {
+    }
+
+    /**
+     * @return true, if the query does not modify the graph
+     */
+    public static boolean isReadOnly(String query) {
+        return !MODIFYING_CLAUSE.matcher(query).find();
+    }
+}
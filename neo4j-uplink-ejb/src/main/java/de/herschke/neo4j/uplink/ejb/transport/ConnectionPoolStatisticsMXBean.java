@@ -0,0 +1,44 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+/**
+ * the statistics of a connection pool, as exposed via JMX.
+ *
+ * @author rhk
+ */
+public interface ConnectionPoolStatisticsMXBean {
+
+    /**
+     * @return the maximum count of pooled connections
+     */
+    int getMaxConnections();
+
+    /**
+     * @return the maximum count of pooled connections to one server
+     */
+    int getMaxConnectionsPerRoute();
+
+    /**
+     * @return the count of connections, that are currently in use
+     */
+    int getLeasedConnections();
+
+    /**
+     * @return the count of idle connections, that are kept alive in the pool
+     */
+    int getAvailableConnections();
+
+    /**
+     * @return the count of requests, that wait for a connection
+     */
+    int getPendingRequests();
+
+    /**
+     * @return the count of requests, that were sent over this pool
+     */
+    long getRequestCount();
+
+    /**
+     * @return the count of responses, that were aborted
+     */
+    long getAbortedCount();
+}
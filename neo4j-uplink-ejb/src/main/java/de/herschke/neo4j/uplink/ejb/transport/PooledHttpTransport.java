@@ -0,0 +1,269 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.TerminatingClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.core.header.InBoundHeaders;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * a {@link Transport}, that keeps connections to the Neo4j Server alive in a
+ * pool of Apache HttpClient connections. Request entities are streamed to the
+ * connection in chunks.
+ *
+ * @author rhk
+ */
+public class PooledHttpTransport implements Transport {
+
+    private static final String REQUEST_PROPERTY = PooledHttpTransport.class.getName() + ".request";
+    private PoolingClientConnectionManager connectionManager;
+    private DefaultHttpClient httpClient;
+    private long idleTimeout;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong abortedCount = new AtomicLong();
+
+    @Override
+    public Client createClient(TransportSettings settings) {
+        connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnectionsPerRoute());
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, settings.getConnectTimeout());
+        HttpConnectionParams.setSoTimeout(params, settings.getReadTimeout());
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        httpClient = new DefaultHttpClient(connectionManager, params);
+        idleTimeout = settings.getIdleTimeout();
+        return new Client(new PooledHttpClientHandler(), new DefaultClientConfig());
+    }
+
+    @Override
+    public void abort(ClientResponse response) {
+        HttpRequestBase request = (HttpRequestBase) response.getProperties().get(REQUEST_PROPERTY);
+        if (request != null) {
+            abortedCount.incrementAndGet();
+            request.abort();
+        } else {
+            response.close();
+        }
+    }
+
+    @Override
+    public void evictIdleConnections() {
+        if (connectionManager != null) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public ConnectionPoolStatisticsMXBean getPoolStatistics() {
+        return new ConnectionPoolStatisticsMXBean() {
+            @Override
+            public int getMaxConnections() {
+                return connectionManager.getMaxTotal();
+            }
+
+            @Override
+            public int getMaxConnectionsPerRoute() {
+                return connectionManager.getDefaultMaxPerRoute();
+            }
+
+            @Override
+            public int getLeasedConnections() {
+                return connectionManager.getTotalStats().getLeased();
+            }
+
+            @Override
+            public int getAvailableConnections() {
+                return connectionManager.getTotalStats().getAvailable();
+            }
+
+            @Override
+            public int getPendingRequests() {
+                return connectionManager.getTotalStats().getPending();
+            }
+
+            @Override
+            public long getRequestCount() {
+                return requestCount.get();
+            }
+
+            @Override
+            public long getAbortedCount() {
+                return abortedCount.get();
+            }
+
+            @Override
+            public String toString() {
+                PoolStats stats = connectionManager.getTotalStats();
+                return String.format("leased: %d, available: %d, pending: %d, max: %d", stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+            }
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+        }
+    }
+
+    /**
+     * the Jersey {@link com.sun.jersey.api.client.ClientHandler}, that
+     * executes the requests with the pooled HttpClient.
+     */
+    private class PooledHttpClientHandler extends TerminatingClientHandler {
+
+        @Override
+        public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+            HttpRequestBase request = createRequest(cr);
+            writeOutBoundHeaders(cr.getHeaders(), request);
+            requestCount.incrementAndGet();
+            try {
+                HttpResponse httpResponse = httpClient.execute(request);
+                HttpEntity entity = httpResponse.getEntity();
+                InputStream content = entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+                ClientResponse response = new ClientResponse(httpResponse.getStatusLine().getStatusCode(), getInBoundHeaders(httpResponse), content, getMessageBodyWorkers());
+                response.getProperties().put(REQUEST_PROPERTY, request);
+                // ClientResponse.hasEntity() cannot be used here, it reports
+                // no entity, if the body has not arrived yet
+                if (entity == null || entity.getContentLength() == 0) {
+                    response.close();
+                }
+                return response;
+            } catch (IOException ex) {
+                request.abort();
+                throw new ClientHandlerException(ex);
+            }
+        }
+
+        private HttpRequestBase createRequest(ClientRequest cr) {
+            final String method = cr.getMethod();
+            HttpRequestBase request;
+            switch (method) {
+                case "GET":
+                    request = new HttpGet(cr.getURI());
+                    break;
+                case "HEAD":
+                    request = new HttpHead(cr.getURI());
+                    break;
+                case "DELETE":
+                    request = new HttpDelete(cr.getURI());
+                    break;
+                case "POST":
+                    request = new HttpPost(cr.getURI());
+                    break;
+                case "PUT":
+                    request = new HttpPut(cr.getURI());
+                    break;
+                default:
+                    throw new ClientHandlerException("method " + method + " is not supported.");
+            }
+            // the timeouts of the client may be overridden for a request
+            Object connectTimeout = cr.getProperties().get(ClientConfig.PROPERTY_CONNECT_TIMEOUT);
+            if (connectTimeout instanceof Integer) {
+                HttpConnectionParams.setConnectionTimeout(request.getParams(), (Integer) connectTimeout);
+            }
+            Object readTimeout = cr.getProperties().get(ClientConfig.PROPERTY_READ_TIMEOUT);
+            if (readTimeout instanceof Integer) {
+                HttpConnectionParams.setSoTimeout(request.getParams(), (Integer) readTimeout);
+            }
+            if (cr.getEntity() != null) {
+                if (!(request instanceof HttpEntityEnclosingRequestBase)) {
+                    throw new ClientHandlerException("Adding entity to http method " + method + " is not supported.");
+                }
+                ((HttpEntityEnclosingRequestBase) request).setEntity(new RequestEntity(getRequestEntityWriter(cr)));
+            }
+            return request;
+        }
+
+        private void writeOutBoundHeaders(Map<String, List<Object>> headers, HttpRequestBase request) {
+            for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+                for (Object value : header.getValue()) {
+                    request.addHeader(header.getKey(), ClientRequest.getHeaderValue(value));
+                }
+            }
+        }
+
+        private InBoundHeaders getInBoundHeaders(HttpResponse response) {
+            InBoundHeaders headers = new InBoundHeaders();
+            for (Header header : response.getAllHeaders()) {
+                List<String> values = headers.get(header.getName());
+                if (values == null) {
+                    values = new ArrayList<>();
+                    headers.put(header.getName(), values);
+                }
+                values.add(header.getValue());
+            }
+            return headers;
+        }
+
+        /**
+         * a request entity, that is written directly to the connection.
+         */
+        private class RequestEntity extends AbstractHttpEntity {
+
+            private final RequestEntityWriter writer;
+
+            RequestEntity(RequestEntityWriter writer) {
+                this.writer = writer;
+                setChunked(writer.getSize() < 0);
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            public long getContentLength() {
+                return writer.getSize();
+            }
+
+            @Override
+            public InputStream getContent() throws IOException {
+                throw new UnsupportedOperationException("the request entity can only be written");
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writer.writeRequestEntity(out);
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        }
+    }
+}
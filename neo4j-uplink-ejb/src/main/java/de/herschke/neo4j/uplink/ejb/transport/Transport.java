@@ -0,0 +1,42 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+
+/**
+ * the transport layer, that creates the Jersey {@link Client} used to talk to
+ * the Neo4j Server. Implementations must have a public no-arg constructor, so
+ * they can be selected by the env-entry 'neo4j-transport'.
+ *
+ * @author rhk
+ */
+public interface Transport {
+
+    /**
+     * creates the client. This is called once, when the service is started.
+     */
+    Client createClient(TransportSettings settings);
+
+    /**
+     * aborts the response, so the remaining content is not read. The
+     * connection is not reused.
+     */
+    void abort(ClientResponse response);
+
+    /**
+     * closes connections, that were idle for longer than the configured idle
+     * timeout.
+     */
+    void evictIdleConnections();
+
+    /**
+     * @return the statistics of the connection pool, or null if this transport
+     * does not pool connections
+     */
+    ConnectionPoolStatisticsMXBean getPoolStatistics();
+
+    /**
+     * releases all resources of this transport.
+     */
+    void shutdown();
+}
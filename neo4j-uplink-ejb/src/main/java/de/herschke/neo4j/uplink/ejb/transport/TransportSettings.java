@@ -0,0 +1,71 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+/**
+ * the settings of a {@link Transport}.
+ *
+ * @author rhk
+ */
+public class TransportSettings {
+
+    private int maxConnections = 32;
+    private int maxConnectionsPerRoute = 16;
+    private long idleTimeout = 60000;
+    private int connectTimeout = 5000;
+    private int readTimeout = 0;
+
+    /**
+     * @return the maximum count of pooled connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the maximum count of pooled connections to one server
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * @return the time in milliseconds, after which an idle connection is
+     * closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return the connect timeout in milliseconds, 0 means no timeout
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return the read timeout in milliseconds, 0 means no timeout
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+}
@@ -0,0 +1,43 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+/**
+ * creates the {@link Transport} by its name.
+ *
+ * @author rhk
+ */
+public final class Transports {
+
+    /**
+     * the name of the {@link PooledHttpTransport}.
+     */
+    public static final String POOLED = "pooled";
+    /**
+     * the name of the {@link UrlConnectionTransport}.
+     */
+    public static final String URL_CONNECTION = "url-connection";
+
+    private Transports() {
+    }
+
+    /**
+     * @param name either {@link #POOLED}, {@link #URL_CONNECTION} or the
+     * fully qualified name of a class, that implements {@link Transport}
+     * @return a new transport
+     */
+    public static Transport create(String name) {
+        if (name == null || name.trim().length() == 0 || POOLED.equals(name.trim())) {
+            return new PooledHttpTransport();
+        } else if (URL_CONNECTION.equals(name.trim())) {
+            return new UrlConnectionTransport();
+        }
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = Transports.class.getClassLoader();
+            }
+            return Class.forName(name.trim(), true, classLoader).asSubclass(Transport.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalArgumentException(String.format("cannot create transport: %s(%s)", ex.getClass().getSimpleName(), ex.getMessage()), ex);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+
+/**
+ * a {@link Transport} based on the {@link java.net.HttpURLConnection} of the
+ * JRE. Connection reuse is controlled by the JRE and cannot be configured
+ * here, so this transport has no pool statistics.
+ *
+ * @author rhk
+ */
+public class UrlConnectionTransport implements Transport {
+
+    @Override
+    public Client createClient(TransportSettings settings) {
+        ClientConfig config = new DefaultClientConfig();
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, settings.getConnectTimeout());
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, settings.getReadTimeout());
+        // stream request entities of unknown size instead of buffering them
+        config.getProperties().put(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, 0);
+        return Client.create(config);
+    }
+
+    @Override
+    public void abort(ClientResponse response) {
+        // HttpURLConnection closes the socket, if there is too much content left
+        response.close();
+    }
+
+    @Override
+    public void evictIdleConnections() {
+    }
+
+    @Override
+    public ConnectionPoolStatisticsMXBean getPoolStatistics() {
+        return null;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,176 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.api.BulkWriteListener;
+import de.herschke.neo4j.uplink.api.BulkWriteOptions;
+import de.herschke.neo4j.uplink.api.BulkWriteResult;
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link BulkWriter}.
+ *
+ * @author rhk
+ */
+public class BulkWriterTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static List<Integer> rows(int count) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(i);
+        }
+        return rows;
+    }
+
+    @Test
+    public void testParallelismAndFailures() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        BulkWriteOptions options = new BulkWriteOptions();
+        options.setInitialChunkSize(10);
+        options.setChunkSizeBounds(10, 10);
+        options.setParallelism(3);
+        final List<Long> progress = new ArrayList<>();
+        final List<BulkWriteResult.Failure> reported = new ArrayList<>();
+        options.setListener(new BulkWriteListener() {
+            @Override
+            public void chunkWritten(long firstRow, int rowCount, long writtenRows) {
+                progress.add(writtenRows);
+            }
+
+            @Override
+            public void chunkFailed(BulkWriteResult.Failure failure) {
+                reported.add(failure);
+            }
+        });
+        BulkWriter writer = new BulkWriter(executor, new BulkWriter.ChunkWriter() {
+            @Override
+            public void write(List<Object> rows) throws CypherException {
+                int current = inFlight.incrementAndGet();
+                int max = maxInFlight.get();
+                while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                    max = maxInFlight.get();
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    throw new CypherException("interrupted", ex);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                if (rows.contains(42)) {
+                    throw new CypherException("constraint violated");
+                }
+            }
+        }, options);
+        BulkWriteResult result = writer.write(rows(95).iterator());
+
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        assertThat(result.getChunkCount()).isEqualTo(10);
+        assertThat(result.getWrittenRows()).isEqualTo(85L);
+        assertThat(result.getFailedRows()).isEqualTo(10L);
+        assertThat(result.isComplete()).isFalse();
+        assertThat(result.getFailures()).hasSize(1);
+        assertThat(result.getFailures().get(0).getFirstRow()).isEqualTo(40L);
+        assertThat(result.getFailures().get(0).getRows()).hasSize(10);
+        assertThat(reported).isEqualTo(result.getFailures());
+        assertThat(progress).hasSize(9);
+        assertThat(progress.get(8)).isEqualTo(85L);
+    }
+
+    @Test
+    public void testAdaptiveChunkSize() throws Exception {
+        BulkWriteOptions options = new BulkWriteOptions();
+        options.setInitialChunkSize(100);
+        options.setChunkSizeBounds(10, 1000);
+        options.setParallelism(1);
+        options.setTargetChunkLatency(50);
+        final ManualClock clock = new ManualClock();
+        // one millisecond per 10 rows, so 500 rows meet the target
+        BulkWriter.ChunkWriter chunkWriter = new BulkWriter.ChunkWriter() {
+            @Override
+            public void write(List<Object> rows) throws CypherException {
+                clock.advance(rows.size() / 10);
+            }
+        };
+        BulkWriter writer = new BulkWriter(executor, chunkWriter, options, clock);
+        // 100, 200, 400 and 500 rows
+        writer.write(rows(1200).iterator());
+        assertThat(writer.getChunkSize()).isEqualTo(500);
+
+        options.setTargetChunkLatency(5);
+        writer = new BulkWriter(executor, chunkWriter, options, clock);
+        // 100, 50 and 50 rows
+        writer.write(rows(200).iterator());
+        assertThat(writer.getChunkSize()).isEqualTo(50);
+    }
+
+    @Test
+    public void testUnreadableRows() throws Exception {
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        BulkWriteOptions options = new BulkWriteOptions();
+        options.setInitialChunkSize(10);
+        options.setChunkSizeBounds(10, 10);
+        options.setParallelism(3);
+        BulkWriter writer = new BulkWriter(executor, new BulkWriter.ChunkWriter() {
+            @Override
+            public void write(List<Object> rows) throws CypherException {
+                started.incrementAndGet();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    throw new CypherException("interrupted", ex);
+                }
+                finished.incrementAndGet();
+            }
+        }, options);
+        final Iterator<Integer> rows = rows(25).iterator();
+        try {
+            writer.write(new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Integer next() {
+                    if (!rows.hasNext()) {
+                        throw new IllegalStateException("the rows cannot be read");
+                    }
+                    return rows.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+            fail("the rows cannot be read");
+        } catch (IllegalStateException ex) {
+            // no chunk is written after the caller got the exception
+            assertThat(finished.get()).isEqualTo(started.get());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import de.herschke.neo4j.uplink.api.CypherQueryOptions;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ * tests the {@link HedgingPolicy} and the hedged queries of the
+ * {@link Neo4jRestService} against a local http server.
+ *
+ * @author rhk
+ */
+public class HedgingPolicyTest {
+
+    @Test
+    public void testBudget() throws Exception {
+        HedgingPolicy hedging = new HedgingPolicy(0.25, 0.95, 5);
+        int hedges = 0;
+        for (int i = 0; i < 20; i++) {
+            hedging.hedgeable();
+            if (hedging.tryHedge()) {
+                hedges++;
+            }
+        }
+        assertThat(hedges).isEqualTo(5);
+        assertThat(hedging.getHedgeCount()).isEqualTo(5);
+        assertThat(hedging.getBudgetExhaustedCount()).isEqualTo(15);
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        HedgingPolicy hedging = new HedgingPolicy(0.05, 0.9, 5);
+        assertThat(hedging.getDelayNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+        for (int i = 0; i < 90; i++) {
+            hedging.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        for (int i = 0; i < 10; i++) {
+            hedging.recordLatency(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        // the upper bound of the bucket of 10 ms
+        assertThat(hedging.getDelayMillis()).isEqualTo(16.384);
+        hedging = new HedgingPolicy(0.05, 0.9, 100);
+        for (int i = 0; i < 100; i++) {
+            hedging.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertThat(hedging.getDelayMillis()).isEqualTo(100.0);
+    }
+
+    private static HttpServer startServer(final AtomicInteger requests, ExecutorService executor) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/db/data/cypher", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int request = requests.incrementAndGet();
+                try {
+                    if (request == 1) {
+                        // the first request stalls like a server in a gc pause
+                        Thread.sleep(2000);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = String.format("{\"columns\":[\"n\"],\"data\":[[%d]]}", request).getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void testHedgedQuery() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer server = startServer(requests, executor);
+        Neo4jRestService service = new Neo4jRestService();
+        service.neo4jURL = "http://localhost:" + server.getAddress().getPort() + "/db/data/";
+        service.hedgeBudget = 1.0;
+        service.hedgeMinDelay = 100;
+        service.init();
+        try {
+            long start = System.nanoTime();
+            CypherResult result = service.executeCypherQuery("START n=node(*) RETURN n", Collections.<String, Object>emptyMap(), CypherQueryOptions.hedged());
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1500));
+            assertThat(result.getValue(0, "n")).isEqualTo(2L);
+            assertThat(requests.get()).isEqualTo(2);
+
+            // a modifying query is never hedged
+            service.executeCypherQuery("CREATE n RETURN n", Collections.<String, Object>emptyMap(), CypherQueryOptions.hedged());
+            assertThat(requests.get()).isEqualTo(3);
+        } finally {
+            service.destroy();
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledWhileWaitingForSlot() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer server = startServer(requests, executor);
+        Neo4jRestService service = new Neo4jRestService();
+        service.neo4jURL = "http://localhost:" + server.getAddress().getPort() + "/db/data/";
+        service.hedgeBudget = 1.0;
+        service.hedgeMinDelay = 100;
+        service.maxConcurrentRequests = 1;
+        service.init();
+        try {
+            // the hedge waits for the only slot, that the stalled first request holds
+            CypherResult result = service.executeCypherQuery("START n=node(*) RETURN n", Collections.<String, Object>emptyMap(), CypherQueryOptions.hedged());
+            assertThat(result.getValue(0, "n")).isEqualTo(1L);
+            Thread.sleep(200);
+            assertThat(requests.get()).isEqualTo(1);
+            assertThat(service.executeCypherQuery("START n=node(*) RETURN n", Collections.<String, Object>emptyMap()).getValue(0, "n")).isEqualTo(2L);
+        } finally {
+            service.destroy();
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
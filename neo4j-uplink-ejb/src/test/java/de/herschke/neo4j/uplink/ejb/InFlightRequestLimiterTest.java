@@ -0,0 +1,157 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import de.herschke.neo4j.uplink.api.CypherRejectedException;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * tests the {@link InFlightRequestLimiter}.
+ *
+ * @author rhk
+ */
+public class InFlightRequestLimiterTest {
+
+    @Test
+    public void testRejectFast() throws Exception {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(2, 0);
+        InFlightRequestLimiter.Permit first = limiter.acquire();
+        limiter.acquire();
+        assertRejected(limiter, CypherRejectedException.Reason.LIMIT_REACHED);
+        first.release();
+        first.release();
+        limiter.acquire();
+        assertThat(limiter.getInFlightRequests()).isEqualTo(2);
+        assertThat(limiter.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueueWithDeadline() throws Exception {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(1, 5000);
+        limiter.setMaxQueued(1);
+        final InFlightRequestLimiter.Permit first = limiter.acquire();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                first.release();
+            }
+        };
+        waiter.start();
+        limiter.acquire();
+        waiter.join();
+        assertThat(limiter.getQueuedRequests()).isEqualTo(0);
+
+        limiter = new InFlightRequestLimiter(1, 50);
+        limiter.acquire();
+        long start = System.nanoTime();
+        assertRejected(limiter, CypherRejectedException.Reason.LIMIT_REACHED);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(50000000L);
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(8, 0);
+        limiter.setMinInFlight(2);
+        limiter.setLatencyThreshold(100);
+        InFlightRequestLimiter.Permit first = limiter.acquire();
+        InFlightRequestLimiter.Permit second = limiter.acquire();
+        first.completed(1000, true);
+        assertThat(limiter.getLimit()).isEqualTo(6);
+        // in flight together with the first, so it saw the same congestion
+        second.completed(1000, true);
+        assertThat(limiter.getLimit()).isEqualTo(6);
+        first.release();
+        second.release();
+
+        for (int i = 0; i < 10; i++) {
+            InFlightRequestLimiter.Permit permit = limiter.acquire();
+            permit.completed(200000000L, false);
+            permit.release();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.getLimitDecreaseCount()).isEqualTo(5);
+
+        InFlightRequestLimiter.Permit[] permits = {limiter.acquire(), limiter.acquire()};
+        for (int i = 0; i < 20; i++) {
+            InFlightRequestLimiter.Permit permit = permits[i % 2];
+            permit.completed(1000, false);
+            permit.release();
+            permits[i % 2] = limiter.acquire();
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(2).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        ManualClock clock = new ManualClock();
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(0, 0, clock);
+        limiter.setCircuitBreaker(2, 50);
+        for (int i = 0; i < 2; i++) {
+            InFlightRequestLimiter.Permit permit = limiter.acquire();
+            permit.completed(1000, true);
+            permit.release();
+        }
+        assertThat(limiter.getCircuitState()).isEqualTo("OPEN");
+        assertRejected(limiter, CypherRejectedException.Reason.CIRCUIT_OPEN);
+
+        clock.advance(49);
+        assertRejected(limiter, CypherRejectedException.Reason.CIRCUIT_OPEN);
+        clock.advance(1);
+        InFlightRequestLimiter.Permit trial = limiter.acquire();
+        assertThat(limiter.getCircuitState()).isEqualTo("HALF_OPEN");
+        assertRejected(limiter, CypherRejectedException.Reason.CIRCUIT_OPEN);
+        trial.completed(1000, true);
+        trial.release();
+        assertThat(limiter.getCircuitState()).isEqualTo("OPEN");
+
+        clock.advance(50);
+        trial = limiter.acquire();
+        trial.completed(1000, false);
+        trial.release();
+        assertThat(limiter.getCircuitState()).isEqualTo("CLOSED");
+        assertThat(limiter.getCircuitTripCount()).isEqualTo(2);
+        limiter.acquire();
+        limiter.acquire();
+    }
+
+    @Test
+    public void testCircuitOpensWhileQueued() throws Exception {
+        final InFlightRequestLimiter limiter = new InFlightRequestLimiter(1, 5000, new ManualClock());
+        limiter.setCircuitBreaker(1, 50);
+        final InFlightRequestLimiter.Permit first = limiter.acquire();
+        Thread failure = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (limiter.getQueuedRequests() == 0) {
+                        Thread.sleep(10);
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                first.completed(1000, true);
+            }
+        };
+        failure.start();
+        long start = System.nanoTime();
+        assertRejected(limiter, CypherRejectedException.Reason.CIRCUIT_OPEN);
+        assertThat(System.nanoTime() - start).isLessThan(2000000000L);
+        failure.join();
+        assertThat(limiter.getQueuedRequests()).isEqualTo(0);
+        assertThat(limiter.getInFlightRequests()).isEqualTo(1);
+    }
+
+    private void assertRejected(InFlightRequestLimiter limiter, CypherRejectedException.Reason reason) throws Exception {
+        try {
+            limiter.acquire();
+            fail("the request should be rejected");
+        } catch (CypherRejectedException ex) {
+            assertThat(ex.getReason()).isEqualTo(reason);
+        }
+    }
+}
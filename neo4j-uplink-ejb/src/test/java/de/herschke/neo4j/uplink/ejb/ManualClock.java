@@ -0,0 +1,22 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a {@link NanoClock}, that is only advanced by the test.
+ *
+ * @author rhk
+ */
+class ManualClock implements NanoClock {
+
+    private long nanos = 0;
+
+    @Override
+    public synchronized long nanoTime() {
+        return nanos;
+    }
+
+    synchronized void advance(long millis) {
+        nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -1,16 +1,25 @@
 package de.herschke.neo4j.uplink.ejb;
 
+import de.herschke.neo4j.uplink.api.CypherCursor;
 import de.herschke.neo4j.uplink.api.CypherException;
 import de.herschke.neo4j.uplink.api.CypherResult;
 import de.herschke.neo4j.uplink.api.Neo4jUplink;
 import de.herschke.neo4j.uplink.api.Node;
 import de.herschke.neo4j.uplink.api.Relationship;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.ejb.EJB;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import org.fest.assertions.MapAssert;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.container.test.api.OperateOnDeployment;
@@ -61,7 +70,7 @@ public class Neo4jRestServiceIT {
     @Deployment(order = 2, name = "test-candidate")
     public static WebArchive createTestArchive() {
         WebArchive wa = ShrinkWrap.create(WebArchive.class, "sample.war");
-        wa.addClasses(Neo4jRestService.class);
+        wa.addPackages(true, Neo4jRestService.class.getPackage());
         wa.addAsWebInfResource("META-INF/beans.xml");
         wa.addAsWebInfResource("ejb-jar.xml");
         for (File libFile : new File("target/libs").listFiles()) {
@@ -176,6 +185,13 @@ public class Neo4jRestServiceIT {
         assertThat(result.getValue(0, "n.year")).isInstanceOf(String.class).isEqualTo(newMovie.getYear());
     }
 
+    @Test
+    @OperateOnDeployment("test-candidate")
+    public void typedQueryTest() throws Exception {
+        List<String> names = qe.executeCypherQuery("start n=node:node_auto_index(name=\"Keanu Reeves\") return n.name", Collections.<String, Object>emptyMap(), String.class);
+        assertThat(names).containsExactly("Keanu Reeves");
+    }
+
     @Test
     @OperateOnDeployment("test-candidate")
     public void relationshipQueryTest() throws Exception {
@@ -184,8 +200,8 @@ public class Neo4jRestServiceIT {
         assertThat(result).isNotNull();
         assertThat(result.getColumnCount()).isEqualTo(3);
         assertThat(result.getRowCount()).isEqualTo(3);
-        int n = ((Long) result.getValue(0, "ID(n)")).intValue();
-        int m = ((Long) result.getValue(0, "ID(m)")).intValue();
+        long n = (Long) result.getValue(0, "ID(n)");
+        long m = (Long) result.getValue(0, "ID(m)");
         Object cell = result.getValue(0, "r");
 
         assertThat(cell).isNotNull().isInstanceOf(Relationship.class);
@@ -243,4 +259,80 @@ public class Neo4jRestServiceIT {
         assertThat(aggregateResult)
                 .hasSize(3).doesNotHaveDuplicates().containsOnly("The Matrix", "The Matrix Reloaded", "The Matrix Revolutions");
     }
+
+    @Test
+    @OperateOnDeployment("test-candidate")
+    public void cursorQueryTest() throws Exception {
+        try (CypherCursor cursor = qe.openCypherCursor("start n=node:node_auto_index(name={actorname}) "
+                        + "match n-[:ACTS_IN]->m \n"
+                        + "return m.title as `movie.title`", Collections.<String, Object>singletonMap("actorname", "Keanu Reeves"))) {
+            assertThat(cursor.getColumnNames()).containsExactly("movie.title");
+            int rows = 0;
+            while (cursor.next()) {
+                assertThat(cursor.getValue("movie.title")).isInstanceOf(String.class);
+                rows++;
+            }
+            assertThat(rows).isEqualTo(3);
+        }
+    }
+
+    private double measureThroughput(int callers, final int queriesPerCaller) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        startSignal.await();
+                        for (int q = 0; q < queriesPerCaller; q++) {
+                            CypherResult result = qe.executeCypherQuery("start n=node:node_auto_index(name={actorname}) match n-[:ACTS_IN]->m return m.title", Collections.<String, Object>singletonMap("actorname", "Keanu Reeves"));
+                            assertThat(result.getRowCount()).isEqualTo(3);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            double throughput = (callers * queriesPerCaller) * 1e9 / elapsed;
+            System.out.println(String.format("%d callers: %.1f queries/s", callers, throughput));
+            return throughput;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @OperateOnDeployment("test-candidate")
+    public void concurrentQueryTest() throws Exception {
+        // warm up
+        measureThroughput(1, 20);
+        double singleCaller = measureThroughput(1, 100);
+        double fourCallers = measureThroughput(4, 100);
+        // if the calls were serialized by the bean, the throughput would not grow
+        assertThat(fourCallers).isGreaterThan(singleCaller * 1.5);
+    }
+
+    @Test
+    @OperateOnDeployment("test-candidate")
+    public void asyncQueryTest() throws Exception {
+        Future<CypherResult> movies = qe.executeCypherQueryAsync("start n=node:node_auto_index(name={actorname}) match n-[:ACTS_IN]->m return m.title", Collections.<String, Object>singletonMap("actorname", "Keanu Reeves"));
+        Future<CypherResult> count = qe.executeCypherQueryAsync("START n=node(0) RETURN count(n)", Collections.<String, Object>emptyMap());
+        Future<CypherResult> error = qe.executeCypherQueryAsync("START n=node(*) WHERE n.name!=\"Keanu Reeves\" RETURN n.name", Collections.<String, Object>emptyMap());
+
+        assertThat(movies.get().getRowCount()).isEqualTo(3);
+        assertThat(count.get().getValue(0, "count(n)")).isEqualTo(1L);
+        try {
+            error.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException exception) {
+            assertThat(exception.getCause()).isInstanceOf(CypherException.class);
+        }
+    }
 }
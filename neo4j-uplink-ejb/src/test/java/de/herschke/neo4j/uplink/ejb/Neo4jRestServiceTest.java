@@ -0,0 +1,123 @@
+package de.herschke.neo4j.uplink.ejb;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import de.herschke.neo4j.uplink.api.CypherCursor;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link Neo4jRestService} against a local http server, that
+ * answers every query with the same rows.
+ *
+ * @author rhk
+ */
+public class Neo4jRestServiceTest {
+
+    private HttpServer server;
+    private Neo4jRestService service;
+    private volatile int rows;
+    private volatile boolean compress;
+    private volatile String acceptEncoding;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/db/data/cypher", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                if (compress) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = compress ? new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody();
+                try (Writer out = new OutputStreamWriter(body, "UTF-8")) {
+                    out.write("{\"columns\":[\"n\"],\"data\":[");
+                    for (int r = 0; r < rows; r++) {
+                        out.write(r == 0 ? "[0]" : ",[" + r + "]");
+                    }
+                    out.write("]}");
+                } catch (IOException ex) {
+                    // the client aborted the response
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        service = new Neo4jRestService();
+        service.neo4jURL = "http://localhost:" + server.getAddress().getPort() + "/db/data/";
+        service.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.destroy();
+        server.stop(0);
+    }
+
+    private CypherCursor openCursor() throws Exception {
+        return service.openCypherCursor("START n=node(*) RETURN n", Collections.<String, Object>emptyMap());
+    }
+
+    @Test
+    public void testCursorClosedEarly() throws Exception {
+        rows = 500000;
+        try (CypherCursor cursor = openCursor()) {
+            for (int r = 0; r < 10; r++) {
+                assertThat(cursor.next()).isTrue();
+            }
+            assertThat(cursor.getValue("n")).isEqualTo(9L);
+        }
+        assertThat(service.transport.getPoolStatistics().getAbortedCount()).isEqualTo(1);
+
+        // a cursor, that is read to the end, keeps the connection
+        rows = 10;
+        try (CypherCursor cursor = openCursor()) {
+            while (cursor.next()) {
+            }
+        }
+        assertThat(service.transport.getPoolStatistics().getAbortedCount()).isEqualTo(1);
+        assertThat(service.transport.getPoolStatistics().getAvailableConnections()).isEqualTo(1);
+    }
+
+    @Test
+    public void testResponseCompression() throws Exception {
+        rows = 1000;
+        service.responseCompression = true;
+        compress = true;
+        CypherResult result = service.executeCypherQuery("START n=node(*) RETURN n", Collections.<String, Object>emptyMap());
+        assertThat(acceptEncoding).isEqualTo("gzip");
+        assertThat(result.getRowCount()).isEqualTo(1000);
+        assertThat(result.getValue(999, "n")).isEqualTo(999L);
+
+        // the server may still send the body uncompressed
+        compress = false;
+        result = service.executeCypherQuery("START n=node(*) RETURN n", Collections.<String, Object>emptyMap());
+        assertThat(result.getRowCount()).isEqualTo(1000);
+        assertThat(result.getValue(999, "n")).isEqualTo(999L);
+
+        // the cursor decompresses the streamed body, too
+        compress = true;
+        try (CypherCursor cursor = openCursor()) {
+            int count = 0;
+            while (cursor.next()) {
+                count++;
+            }
+            assertThat(count).isEqualTo(1000);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.herschke.neo4j.uplink.ejb.cache;
+
+import de.herschke.neo4j.uplink.api.CypherQueryOptions;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.ejb.requestwriting.JsonRequestWriter;
+import de.herschke.neo4j.uplink.ejb.responsehandling.CypherResponseHandler;
+import de.herschke.neo4j.uplink.ejb.responsehandling.CypherResultSink;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.fest.assertions.Assertions.assertThat;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+/**
+ * tests the {@link ResultCache}.
+ *
+ * @author rhk
+ */
+public class ResultCacheTest {
+
+    private static final String NO_PARAMS = "{}";
+    private static final CypherQueryOptions NO_OPTIONS = new CypherQueryOptions();
+
+    private CypherResult result(String name) throws Exception {
+        CypherResponseHandler handler = new CypherResponseHandler();
+        new JSONParser().parse("{ \"columns\": [\"name\"], \"data\": [[\"" + name + "\"]] }", handler);
+        return handler.getResult();
+    }
+
+    @Test
+    public void testKeyIsNormalized() throws Exception {
+        ResultCache cache = new ResultCache(10, 1000, false, false);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("b", Arrays.asList(1, 2));
+        params.put("a", "x  y");
+        Map<String, Object> reordered = new HashMap<>();
+        reordered.put("a", "x  y");
+        reordered.put("b", new int[]{1, 2});
+
+        assertThat(cache.createKey("START n=node({a})\n  RETURN   n.name", JsonRequestWriter.toCanonicalParams(params), NO_OPTIONS)).isEqualTo(cache.createKey(" START n=node({a}) RETURN n.name ", JsonRequestWriter.toCanonicalParams(reordered), NO_OPTIONS));
+        assertThat(cache.createKey("START n=node(*) WHERE n.name = 'a  b' RETURN n", NO_PARAMS, NO_OPTIONS)).isNotEqualTo(cache.createKey("START n=node(*) WHERE n.name = 'a b' RETURN n", NO_PARAMS, NO_OPTIONS));
+        assertThat(ResultCache.normalizeQuery("RETURN  'it\\'s  here'  ,\t1")).isEqualTo("RETURN 'it\\'s  here' , 1");
+        assertThat(cache.createKey("RETURN 1", NO_PARAMS, CypherQueryOptions.columns("a", "b"))).isEqualTo(cache.createKey("RETURN 1", NO_PARAMS, CypherQueryOptions.columns("b", "a")));
+        assertThat(cache.createKey("RETURN 1", NO_PARAMS, CypherQueryOptions.columns("a"))).isNotEqualTo(cache.createKey("RETURN 1", NO_PARAMS, NO_OPTIONS));
+        assertThat(cache.createKey("RETURN 1", NO_PARAMS, CypherQueryOptions.uncached())).isEqualTo(cache.createKey("RETURN 1", NO_PARAMS, NO_OPTIONS));
+        assertThat(cache.createKey("RETURN 1", NO_PARAMS, CypherQueryOptions.maxRows(10))).isNotEqualTo(cache.createKey("RETURN 1", NO_PARAMS, NO_OPTIONS));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        ResultCache cache = new ResultCache(2, 10000, false, false);
+        ResultCache.Key a = cache.createKey("a", NO_PARAMS, NO_OPTIONS);
+        ResultCache.Key b = cache.createKey("b", NO_PARAMS, NO_OPTIONS);
+        ResultCache.Key c = cache.createKey("c", NO_PARAMS, NO_OPTIONS);
+        CypherResult resultA = cache.put(a, result("a"), -1);
+        cache.put(b, result("b"), -1);
+        assertThat((Object) cache.get(a)).isSameAs(resultA);
+        cache.put(c, result("c"), -1);
+
+        assertThat((Object) cache.get(b)).isNull();
+        assertThat((Object) cache.get(a)).isNotNull();
+        assertThat((Object) cache.get(c)).isNotNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(3);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiredResultIsRemoved() throws Exception {
+        ResultCache cache = new ResultCache(10, 10000, false, false);
+        ResultCache.Key key = cache.createKey("a", NO_PARAMS, NO_OPTIONS);
+        cache.put(key, result("a"), 1);
+        Thread.sleep(5);
+        assertThat((Object) cache.get(key)).isNull();
+        assertThat(cache.getExpiredCount()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSerializedResultIsCopied() throws Exception {
+        ResultCache cache = new ResultCache(10, 10000, false, true);
+        ResultCache.Key key = cache.createKey("a", NO_PARAMS, NO_OPTIONS);
+        CypherResult result = cache.put(key, result("Keanu"), -1);
+        CypherResult cached = cache.get(key);
+        assertThat((Object) cached).isNotSameAs(result);
+        assertThat(cached.getValue(0, "name")).isEqualTo("Keanu");
+    }
+
+    /**
+     * a value, that cannot be deserialized.
+     */
+    private static class Unreadable implements Serializable {
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            throw new InvalidObjectException("unreadable");
+        }
+    }
+
+    @Test
+    public void testUnreadableResultIsMissed() throws Exception {
+        ResultCache cache = new ResultCache(10, 10000, false, true);
+        ResultCache.Key key = cache.createKey("a", NO_PARAMS, NO_OPTIONS);
+        CypherResult result = result("Keanu");
+        ((CypherResultSink) result).addRow(1, Arrays.asList(new Unreadable()));
+        cache.put(key, result, -1);
+        assertThat(cache.getSize()).isEqualTo(1);
+
+        assertThat((Object) cache.get(key)).isNull();
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        ResultCache cache = new ResultCache(10, 10000, false, false);
+        ResultCache.Key a1 = cache.createKey("START n=node({id}) RETURN n", JsonRequestWriter.toCanonicalParams(Collections.<String, Object>singletonMap("id", 1)), NO_OPTIONS);
+        ResultCache.Key a2 = cache.createKey("START n=node({id}) RETURN n", JsonRequestWriter.toCanonicalParams(Collections.<String, Object>singletonMap("id", 2)), NO_OPTIONS);
+        ResultCache.Key b = cache.createKey("START n=node(0) RETURN n", NO_PARAMS, NO_OPTIONS);
+        cache.put(a1, result("1"), -1);
+        cache.put(a2, result("2"), -1);
+        cache.put(b, result("0"), -1);
+
+        cache.invalidate("START  n=node({id})  RETURN n");
+        assertThat(cache.getSize()).isEqualTo(1);
+        cache.invalidateAll();
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCacheable() {
+        ResultCache byDefault = new ResultCache(10, 10000, true, false);
+        assertThat(byDefault.isCacheable("START n=node(0) RETURN n", new CypherQueryOptions())).isTrue();
+        assertThat(byDefault.isCacheable("START n=node(0) SET n.name = 'x'", new CypherQueryOptions())).isFalse();
+        assertThat(byDefault.isCacheable("START n=node(0) RETURN n", CypherQueryOptions.uncached())).isFalse();
+
+        ResultCache optIn = new ResultCache(10, 10000, false, false);
+        assertThat(optIn.isCacheable("START n=node(0) RETURN n", new CypherQueryOptions())).isFalse();
+        assertThat(optIn.isCacheable("START n=node(0) RETURN n", CypherQueryOptions.cached())).isTrue();
+
+        // the own writes are read from the master, never from the cache
+        CypherQueryOptions onMaster = CypherQueryOptions.onMaster();
+        onMaster.setCaching(CypherQueryOptions.Caching.ENABLED);
+        assertThat(byDefault.isCacheable("START n=node(0) RETURN n", onMaster)).isFalse();
+    }
+}
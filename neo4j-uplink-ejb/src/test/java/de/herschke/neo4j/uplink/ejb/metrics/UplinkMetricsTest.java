@@ -0,0 +1,91 @@
+package de.herschke.neo4j.uplink.ejb.metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+import org.junit.Test;
+
+/**
+ * tests the {@link UplinkMetrics}.
+ *
+ * @author rhk
+ */
+public class UplinkMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertThat(statistics.getCount()).isEqualTo(100);
+        assertThat(statistics.getMean()).isEqualTo(50.5, delta(0.001));
+        assertThat(statistics.getMax()).isEqualTo(100.0, delta(0.001));
+        // the percentiles are precise up to a factor of two
+        assertThat(statistics.getP50()).isGreaterThanOrEqualTo(50.0).isLessThanOrEqualTo(100.0);
+        assertThat(statistics.getP99()).isGreaterThanOrEqualTo(99.0).isLessThanOrEqualTo(100.0);
+    }
+
+    @Test
+    public void testTrace() throws Exception {
+        UplinkMetrics metrics = new UplinkMetrics(0, 1.0);
+        RequestTrace trace = metrics.start("START n=node(0) RETURN n");
+        trace.requestWritten(42, 0);
+        trace.responded();
+        assertThat(metrics.getInFlightRequests()).isEqualTo(1);
+        InputStream response = trace.countResponse(new ByteArrayInputStream(new byte[100]));
+        while (response.read(new byte[16]) >= 0) {
+        }
+        trace.parsed(3, 0);
+        trace.finish();
+        trace.finish();
+
+        assertThat(metrics.getRequestCount()).isEqualTo(1);
+        assertThat(metrics.getInFlightRequests()).isEqualTo(0);
+        assertThat(metrics.getRequestBytes()).isEqualTo(42);
+        assertThat(metrics.getResponseBytes()).isEqualTo(100);
+        assertThat(metrics.getRowCount()).isEqualTo(3);
+        assertThat(metrics.getTotalLatency().getCount()).isEqualTo(1);
+        assertThat(metrics.getErrorCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCursorAndErrors() throws Exception {
+        UplinkMetrics metrics = new UplinkMetrics(0, 1.0);
+        RequestTrace trace = metrics.start("START n=node(0) RETURN n");
+        InputStream stream = trace.finishOnClose(new ByteArrayInputStream(new byte[0]));
+        assertThat(metrics.getOpenCursors()).isEqualTo(1);
+        stream.close();
+        assertThat(metrics.getOpenCursors()).isEqualTo(0);
+        assertThat(metrics.getTotalLatency().getCount()).isEqualTo(0);
+
+        trace = metrics.start("START n=node(-1) RETURN n");
+        trace.failed("400");
+        trace.finish();
+        assertThat(metrics.getErrorCount()).isEqualTo(1);
+        assertThat(metrics.getErrorCountsByStatus().get("400")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        UplinkMetrics metrics = new UplinkMetrics(0, 1.0);
+        metrics.start("query").finish();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("de.herschke.neo4j.uplink:type=Metrics,url=test");
+        server.registerMBean(new StandardMBean(metrics, UplinkMetricsMXBean.class, true), name);
+        try {
+            assertThat(server.getAttribute(name, "RequestCount")).isEqualTo(1L);
+            assertThat(((CompositeData) server.getAttribute(name, "TotalLatency")).get("count")).isEqualTo(1L);
+            assertThat(server.getAttribute(name, "ErrorCountsByStatus")).isNotNull();
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import java.util.HashMap;
+import java.util.Map;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ * tests the {@link BeanAccessor}.
+ *
+ * @author rhk
+ */
+public class BeanAccessorTest {
+
+    public static class Person {
+
+        public String getName() {
+            return "Keanu";
+        }
+
+        public boolean isActor() {
+            return true;
+        }
+
+        public int getAge(int year) {
+            return 0;
+        }
+
+        public static String getSpecies() {
+            return "human";
+        }
+    }
+
+    private static class Secret {
+
+        public String getValue() {
+            return "hidden";
+        }
+
+        public String getBroken() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    private Map<String, Object> read(Object bean) throws CypherException {
+        BeanAccessor accessor = BeanAccessor.forClass(bean.getClass());
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < accessor.getPropertyCount(); i++) {
+            if (!"broken".equals(accessor.getPropertyName(i))) {
+                properties.put(accessor.getPropertyName(i), accessor.getPropertyValue(bean, i));
+            }
+        }
+        return properties;
+    }
+
+    @Test
+    public void testProperties() throws Exception {
+        Map<String, Object> properties = read(new Person());
+        assertThat(properties).hasSize(2);
+        assertThat(properties.get("name")).isEqualTo("Keanu");
+        assertThat(properties.get("actor")).isEqualTo(true);
+    }
+
+    @Test
+    public void testAccessorIsCached() {
+        assertThat(BeanAccessor.forClass(Person.class)).isSameAs(BeanAccessor.forClass(Person.class));
+    }
+
+    @Test
+    public void testNonPublicClass() throws Exception {
+        assertThat(read(new Secret()).get("value")).isEqualTo("hidden");
+    }
+
+    @Test(expected = CypherException.class)
+    public void testFailingGetter() throws Exception {
+        BeanAccessor accessor = BeanAccessor.forClass(Secret.class);
+        for (int i = 0; i < accessor.getPropertyCount(); i++) {
+            if ("broken".equals(accessor.getPropertyName(i))) {
+                accessor.getPropertyValue(new Secret(), i);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package de.herschke.neo4j.uplink.ejb.requestwriting;
+
+import de.herschke.neo4j.uplink.api.CypherStatement;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import static org.fest.assertions.Assertions.assertThat;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+/**
+ * tests the {@link JsonRequestWriter} and the {@link JsonRequestEntity}.
+ *
+ * @author rhk
+ */
+public class JsonRequestWriterTest {
+
+    public static class Movie {
+
+        public String getTitle() {
+            return "The \"Matrix\"\n";
+        }
+
+        public int getYear() {
+            return 1999;
+        }
+    }
+
+    public static class Role {
+
+        public String getName() {
+            return "Neo";
+        }
+
+        public Movie getMovie() {
+            return new Movie();
+        }
+    }
+
+    private JSONObject writeRequest(String query, Map<String, Object> params) throws Exception {
+        StringWriter out = new StringWriter();
+        new JsonRequestWriter(out, false).writeCypherRequest(query, params);
+        return (JSONObject) JSONValue.parseWithException(out.toString());
+    }
+
+    @Test
+    public void testPlainParams() throws Exception {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("name", "Keanu\tReeves  ");
+        params.put("ids", new long[]{1, 2, 3});
+        params.put("age", 48);
+        params.put("rate", Double.NaN);
+        params.put("type", Movie.class);
+        params.put("tags", Arrays.asList("a", null));
+
+        JSONObject request = writeRequest("START n=node({ids}) RETURN n", params);
+        assertThat(request.get("query")).isEqualTo("START n=node({ids}) RETURN n");
+        JSONObject written = (JSONObject) request.get("params");
+        assertThat(written.get("name")).isEqualTo("Keanu\tReeves  ");
+        assertThat((JSONArray) written.get("ids")).containsExactly(1L, 2L, 3L);
+        assertThat(written.get("age")).isEqualTo(48L);
+        assertThat(written.get("rate")).isNull();
+        assertThat(written.get("type")).isEqualTo("Movie");
+        assertThat((JSONArray) written.get("tags")).containsExactly("a", null);
+    }
+
+    @Test
+    public void testBeanParamsAreFlattened() throws Exception {
+        JSONObject params = (JSONObject) writeRequest("CREATE (n {role})", Collections.<String, Object>singletonMap("role", new Role())).get("params");
+
+        assertThat(((JSONObject) params.get("role")).get("name")).isEqualTo("Neo");
+        assertThat(((JSONObject) ((JSONObject) params.get("role")).get("movie")).get("year")).isEqualTo(1999L);
+        assertThat(params.get("role.name")).isEqualTo("Neo");
+        assertThat(((JSONObject) params.get("role.movie")).get("title")).isEqualTo("The \"Matrix\"\n");
+        assertThat(params.get("role.movie.title")).isEqualTo("The \"Matrix\"\n");
+        assertThat(params.get("role.movie.year")).isEqualTo(1999L);
+        assertThat(params).hasSize(5);
+    }
+
+    @Test
+    public void testCanonicalParams() throws Exception {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("role", new Role());
+        params.put("b", 2);
+        params.put("a", 1);
+        String canonical = JsonRequestWriter.toCanonicalParams(params);
+
+        assertThat(canonical).startsWith("{\"a\":1,\"b\":2,\"role\":{\"movie\":{\"title\":");
+        StringWriter streamed = new StringWriter();
+        new JsonRequestWriter(streamed, false).writeParams(params);
+        assertThat(JSONValue.parseWithException(canonical)).isEqualTo(JSONValue.parseWithException(streamed.toString()));
+    }
+
+    @Test
+    public void testBatchEntity() throws Exception {
+        JsonRequestEntity entity = JsonRequestEntity.batchRequest(Arrays.asList(new CypherStatement("START n=node(0) RETURN n"), new CypherStatement("START n=node({id}) RETURN n", Collections.<String, Object>singletonMap("id", 1))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.write(out);
+
+        assertThat(entity.getWrittenBytes()).isEqualTo(out.size());
+        JSONArray jobs = (JSONArray) JSONValue.parseWithException(out.toString("UTF-8"));
+        assertThat(jobs).hasSize(2);
+        JSONObject job = (JSONObject) jobs.get(1);
+        assertThat(job.get("method")).isEqualTo("POST");
+        assertThat(job.get("to")).isEqualTo("/cypher");
+        assertThat(job.get("id")).isEqualTo(1L);
+        assertThat(((JSONObject) ((JSONObject) job.get("body")).get("params")).get("id")).isEqualTo(1L);
+    }
+
+    @Test
+    public void testCompressedEntity() throws Exception {
+        Map<String, Object> params = Collections.<String, Object>singletonMap("names", Collections.nCopies(1000, "Keanu Reeves"));
+
+        JsonRequestEntity small = JsonRequestEntity.cypherRequest("RETURN 1", Collections.<String, Object>emptyMap());
+        assertThat(small.compressIfLargerThan(1024)).isFalse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        small.write(out);
+        assertThat(out.toString("UTF-8")).isEqualTo("{\"query\":\"RETURN 1\",\"params\":{}}");
+
+        JsonRequestEntity large = JsonRequestEntity.cypherRequest("RETURN {names}", params);
+        assertThat(large.compressIfLargerThan(1024)).isTrue();
+        out = new ByteArrayOutputStream();
+        large.write(out);
+        assertThat(large.getWrittenBytes()).isEqualTo(out.size()).isLessThan(1024);
+        JSONObject request = (JSONObject) JSONValue.parseWithException(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8"));
+        assertThat((JSONArray) ((JSONObject) request.get("params")).get("names")).hasSize(1000);
+    }
+}
@@ -0,0 +1,171 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.Node;
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * tests the mapping of rows onto objects by the {@link BeanMappingSink} with
+ * both parsers.
+ *
+ * @author rhk
+ */
+public class BeanMappingSinkTest {
+
+    public static class Movie {
+
+        private String title;
+        private int year;
+        private String[] genres;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public void setYear(int year) {
+            this.year = year;
+        }
+
+        public String[] getGenres() {
+            return genres;
+        }
+
+        public void setGenres(String[] genres) {
+            this.genres = genres;
+        }
+    }
+
+    public static class Actor {
+
+        private final String name;
+        private final int born;
+        private long id;
+
+        @ConstructorProperties({"name", "born"})
+        public Actor(String name, int born) {
+            this.name = name;
+            this.born = born;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getBorn() {
+            return born;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+    }
+
+    public static class Link {
+
+        private String url;
+
+        public String getURL() {
+            return url;
+        }
+
+        public void setURL(String url) {
+            this.url = url;
+        }
+    }
+
+    public static enum Kind {
+
+        MOVIE, ACTOR
+    }
+    private static final String MOVIES = "{\"columns\":[\"m.title\",\"m.year?\",\"m.genres\"],\"data\":["
+            + "[\"The Matrix\",1999,[\"Action\",\"Sci-Fi\"]],"
+            + "[\"Speed\",null,[]]]}";
+    private static final String ACTORS = "{\"columns\":[\"a\",\"name\"],\"data\":["
+            + "[{\"self\":\"http://localhost:7474/db/data/node/42\",\"data\":{\"name\":\"Keanu Reeves\",\"born\":1964,\"unknown\":true}},\"Neo\"],"
+            + "[{\"self\":\"http://localhost:7474/db/data/node/7\",\"data\":{\"name\":\"Carrie-Anne Moss\"}},null]]}";
+
+    @Test
+    public void testSetters() throws Exception {
+        for (String parserName : new String[]{CypherResponseParsers.JSON_SIMPLE, CypherResponseParsers.JACKSON}) {
+            List<Movie> movies = parse(parserName, MOVIES, Movie.class);
+            assertThat(movies).hasSize(2);
+            assertThat(movies.get(0).getTitle()).isEqualTo("The Matrix");
+            assertThat(movies.get(0).getYear()).isEqualTo(1999);
+            assertThat(movies.get(0).getGenres()).containsOnly("Action", "Sci-Fi");
+            assertThat(movies.get(1).getTitle()).isEqualTo("Speed");
+            assertThat(movies.get(1).getYear()).isEqualTo(0);
+            assertThat(movies.get(1).getGenres()).isEmpty();
+        }
+    }
+
+    @Test
+    public void testConstructorAndNodes() throws Exception {
+        for (String parserName : new String[]{CypherResponseParsers.JSON_SIMPLE, CypherResponseParsers.JACKSON}) {
+            List<Actor> actors = parse(parserName, ACTORS, Actor.class);
+            assertThat(actors).hasSize(2);
+            // the column, that names the property, takes precedence over the node
+            assertThat(actors.get(0).getName()).isEqualTo("Neo");
+            assertThat(actors.get(0).getBorn()).isEqualTo(1964);
+            assertThat(actors.get(0).getId()).isEqualTo(42L);
+            assertThat(actors.get(1).getName()).isNull();
+            assertThat(actors.get(1).getBorn()).isEqualTo(0);
+            assertThat(actors.get(1).getId()).isEqualTo(7L);
+        }
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        assertThat(parse(CypherResponseParsers.JACKSON, "{\"columns\":[\"count(n)\"],\"data\":[[3]]}", Integer.class)).containsExactly(3);
+        assertThat(parse(CypherResponseParsers.JSON_SIMPLE, "{\"columns\":[\"n.kind\"],\"data\":[[\"ACTOR\"],[null]]}", Kind.class)).containsExactly(Kind.ACTOR, null);
+        List<Node> nodes = parse(CypherResponseParsers.JSON_SIMPLE, ACTORS, Node.class);
+        assertThat(nodes.get(1).getPropertyValue("name")).isEqualTo("Carrie-Anne Moss");
+    }
+
+    @Test
+    public void testNullsAndPropertyNames() throws Exception {
+        for (String parserName : new String[]{CypherResponseParsers.JSON_SIMPLE, CypherResponseParsers.JACKSON}) {
+            // a null for a primitive constructor argument takes its default value
+            List<Actor> actors = parse(parserName, "{\"columns\":[\"name\",\"born\"],\"data\":[[\"Keanu Reeves\",null]]}", Actor.class);
+            assertThat(actors.get(0).getName()).isEqualTo("Keanu Reeves");
+            assertThat(actors.get(0).getBorn()).isEqualTo(0);
+            List<Link> links = parse(parserName, "{\"columns\":[\"l.URL\"],\"data\":[[\"http://neo4j.org\"]]}", Link.class);
+            assertThat(links.get(0).getURL()).isEqualTo("http://neo4j.org");
+        }
+    }
+
+    @Test
+    public void testUnmappableValue() throws Exception {
+        try {
+            parse(CypherResponseParsers.JACKSON, "{\"columns\":[\"title\",\"year\"],\"data\":[[\"The Matrix\",\"1999\"]]}", Movie.class);
+            fail("a string cannot be mapped onto an int");
+        } catch (ResultMappingException ex) {
+            assertThat(ex.getCause()).isInstanceOf(CypherException.class);
+            assertThat(ex.getMessage()).contains("'year'");
+        }
+    }
+
+    private static <T> List<T> parse(String parserName, String json, Class<T> type) throws Exception {
+        CypherResponseParser parser = CypherResponseParsers.create(parserName);
+        BeanMappingSink<T> sink = new BeanMappingSink<>(type);
+        assertThat(parser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")), sink)).isFalse();
+        return sink.getResults();
+    }
+}
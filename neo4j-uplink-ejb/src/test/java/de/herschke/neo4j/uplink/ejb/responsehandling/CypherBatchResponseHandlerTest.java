@@ -0,0 +1,87 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherBatchException;
+import de.herschke.neo4j.uplink.api.CypherException;
+import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.api.Node;
+import java.util.List;
+import static org.fest.assertions.Assertions.assertThat;
+import org.json.simple.parser.JSONParser;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * tests the {@link CypherBatchResponseHandler}.
+ *
+ * @author rhk
+ */
+public class CypherBatchResponseHandlerTest {
+
+    private CypherBatchResponseHandler parse(int statementCount, String json) throws Exception {
+        CypherBatchResponseHandler handler = new CypherBatchResponseHandler(statementCount);
+        new JSONParser().parse(json, handler);
+        return handler;
+    }
+
+    @Test
+    public void testBatchResponse() throws Exception {
+        CypherBatchResponseHandler handler = parse(2, "[ {\n"
+                + "  \"id\" : 1,\n"
+                + "  \"from\" : \"/cypher\",\n"
+                + "  \"body\" : {\n"
+                + "    \"columns\" : [ \"n\" ],\n"
+                + "    \"data\" : [ [ {\n"
+                + "      \"self\" : \"http://localhost:7474/db/data/node/3\",\n"
+                + "      \"data\" : { \"name\" : \"Keanu Reeves\" }\n"
+                + "    } ] ]\n"
+                + "  },\n"
+                + "  \"status\" : 200\n"
+                + "}, {\n"
+                + "  \"id\" : 0,\n"
+                + "  \"from\" : \"/cypher\",\n"
+                + "  \"status\" : 200,\n"
+                + "  \"body\" : { \"columns\" : [ \"a\", \"b\" ], \"data\" : [ [ 1, [ 2, 3 ] ], [ 4, null ] ] }\n"
+                + "} ]");
+
+        List<CypherResult> results = handler.getResults();
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getColumnNames()).containsExactly("a", "b");
+        assertThat(results.get(0).getRowCount()).isEqualTo(2);
+        assertThat((List) results.get(0).getValue(0, "b")).containsExactly(2L, 3L);
+        assertThat(results.get(0).getValue(1, "a")).isEqualTo(4L);
+        assertThat(results.get(1).getValue(0, "n")).isInstanceOf(Node.class);
+        assertThat(((Node) results.get(1).getValue(0, "n")).getId()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testFailedStatement() throws Exception {
+        CypherBatchResponseHandler handler = parse(2, "[ {\n"
+                + "  \"id\" : 0,\n"
+                + "  \"from\" : \"/cypher\",\n"
+                + "  \"body\" : { \"columns\" : [ \"x\" ], \"data\" : [ [ 1 ] ] },\n"
+                + "  \"status\" : 200\n"
+                + "}, {\n"
+                + "  \"id\" : 1,\n"
+                + "  \"from\" : \"/cypher\",\n"
+                + "  \"body\" : {\n"
+                + "    \"message\" : \"Unknown identifier `y`.\",\n"
+                + "    \"exception\" : \"SyntaxException\",\n"
+                + "    \"stacktrace\" : [ \"a\", \"b\" ]\n"
+                + "  },\n"
+                + "  \"status\" : 400\n"
+                + "} ]");
+
+        try {
+            handler.getResults();
+            fail("expected a CypherBatchException");
+        } catch (CypherBatchException ex) {
+            assertThat(ex.getStatementIndex()).isEqualTo(1);
+            assertThat(ex.getMessage()).contains("SyntaxException").contains("Unknown identifier `y`.");
+        }
+    }
+
+    @Test(expected = CypherException.class)
+    public void testMissingStatement() throws Exception {
+        parse(2, "[ { \"id\" : 0, \"body\" : { \"columns\" : [ \"x\" ], \"data\" : [ ] }, \"status\" : 200 } ]").getResults();
+    }
+}
@@ -5,12 +5,15 @@
 package de.herschke.neo4j.uplink.ejb.responsehandling;
 
 import de.herschke.neo4j.uplink.api.CypherResult;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import static org.fest.assertions.Assertions.assertThat;
 import org.fest.assertions.MapAssert;
 import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 /**
@@ -116,6 +119,21 @@ public class CypherResponseHandlerTest {
         assertThat(result.getRowCount()).isEqualTo(3);
     }
 
+    @Test
+    public void testNumbers() throws Exception {
+        CypherResult result = parseJson("{\"columns\": [\"i\", \"d\"], \"data\": [ [ 9223372036854775807, 1.5 ] ]}");
+
+        assertThat(result.getValue(0, "i")).isInstanceOf(Long.class).isEqualTo(Long.MAX_VALUE);
+        assertThat(result.getValue(0, "d")).isInstanceOf(Double.class).isEqualTo(1.5);
+
+        try {
+            parseJson("{\"columns\": [\"i\"], \"data\": [ [ 9223372036854775808 ] ]}");
+            fail("expected the integer to be rejected");
+        } catch (Exception expected) {
+            // json-simple has no representation for integers beyond a long
+        }
+    }
+
     @Test
     public void testObjectColumn() throws Exception {
         String testJson = "{\n"
@@ -135,10 +153,56 @@ public class CypherResponseHandlerTest {
 
     }
 
-    private CypherResult parseJson(String testJson) throws ParseException {
+    @Test
+    public void testColumnProjection() throws Exception {
+        String testJson = "{\n"
+                + "    \"columns\": [\"n\", \"name\", \"tags\", \"age\"],\n"
+                + "    \"data\": [ [ {\"self\" : \"http://localhost:7474/db/data/node/1\", \"data\" : {\"x\" : [1, {\"y\" : 2}]}}, \"Keanu\", [\"a\", [\"b\"]], 48 ],\n"
+                + "               [ null, \"Carrie\", [], 45 ] ]\n"
+                + "}\n";
+
+        CypherResult result = parseJson(testJson, new HashSet<>(Arrays.asList("age", "name", "unknown")));
+
+        assertThat(result.getColumnNames()).containsExactly("name", "age");
+        assertThat(result.getRowCount()).isEqualTo(2);
+        assertThat(result.getRowValues(0)).containsExactly("Keanu", 48L);
+        assertThat(result.getRowValues(1)).containsExactly("Carrie", 45L);
+        assertThat(result.getValue(0, "n")).isNull();
+    }
+
+    @Test
+    public void testMaxRows() throws Exception {
+        // the rest of the response is not read, so it may even be broken
+        String testJson = "{\n"
+                + "    \"columns\": [\"name\"],\n"
+                + "    \"data\": [ [ \"Keanu\" ], [ \"Carrie\" ], [ \"Laurence\" ], [ \"Hugo\"";
+
+        CypherResult result = parseJson(testJson, null, 2);
+
+        assertThat(result.getRowCount()).isEqualTo(2);
+        assertThat(result.getRowValues(1)).containsExactly("Carrie");
+        assertThat(result.isTruncated()).isTrue();
+
+        result = parseJson("{\"columns\": [\"name\"], \"data\": [ [ \"Keanu\" ], [ \"Carrie\" ] ]}", null, 2);
+
+        assertThat(result.getRowCount()).isEqualTo(2);
+        assertThat(result.isTruncated()).isFalse();
+    }
+
+    private CypherResult parseJson(String testJson) throws Exception {
+        return parseJson(testJson, null);
+    }
+
+    private CypherResult parseJson(String testJson, Set<String> columns) throws Exception {
+        return parseJson(testJson, columns, 0);
+    }
+
+    protected CypherResult parseJson(String testJson, Set<String> columns, int maxRows) throws Exception {
         System.out.println(">>>>>>>>>>> json: >>>>>>>>>>");
         System.out.println(testJson);
         final CypherResponseHandler handler = new CypherResponseHandler();
+        handler.setColumns(columns);
+        handler.setMaxRows(maxRows);
         JSONParser parser = new JSONParser();
         parser.parse(testJson, handler);
         CypherResult result = handler.getResult();
@@ -0,0 +1,110 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.Node;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.simple.JSONObject;
+
+/**
+ * the results, that are shared by the tests and the benchmarks of the
+ * serialization of results.
+ *
+ * @author rhk
+ */
+public final class CypherResultFixtures {
+
+    private CypherResultFixtures() {
+    }
+
+    /**
+     * @return a node, as the server returns it, with the urls of its
+     * properties and relationships
+     */
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    public static JSONObject node(long id, String name) {
+        String self = "http://localhost:7474/db/data/node/" + id;
+        JSONObject data = new JSONObject();
+        data.put("name", name);
+        data.put("born", 1964L);
+        JSONObject node = new JSONObject();
+        node.put("self", self);
+        node.put("properties", self + "/properties");
+        node.put("outgoing_relationships", self + "/relationships/out");
+        node.put("incoming_relationships", self + "/relationships/in");
+        node.put("data", data);
+        return node;
+    }
+
+    /**
+     * @return a relationship, whose keys and type are new strings, as the
+     * parser creates them
+     */
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    public static JSONObject relationship(long id, String type) {
+        JSONObject data = new JSONObject();
+        data.put(new String("since"), 1999L);
+        JSONObject relationship = new JSONObject();
+        relationship.put("self", "http://localhost:7474/db/data/relationship/" + id);
+        relationship.put("start", "http://localhost:7474/db/data/node/1");
+        relationship.put("end", "http://localhost:7474/db/data/node/2");
+        relationship.put(new String("type"), new String(type));
+        relationship.put("data", data);
+        return relationship;
+    }
+
+    /**
+     * @return a result with the columns n, id(n), n.name and score, whose
+     * rows repeat the given count of nodes
+     */
+    public static DefaultCypherResult createNodeResult(int rows, int nodes) {
+        DefaultCypherResult result = new DefaultCypherResult();
+        for (String column : new String[]{"n", "id(n)", "n.name", "score"}) {
+            result.addColumn(column);
+        }
+        for (int r = 0; r < rows; r++) {
+            long id = r % nodes;
+            result.addRow(r, Arrays.asList(node(id, "name-" + id), (long) r, "name-" + id, r * 0.5));
+        }
+        result.releaseInterner();
+        return result;
+    }
+
+    /**
+     * @return the rows of {@link #createNodeResult} in the former form of a
+     * result: a list of maps, with a node of its own per row
+     */
+    public static ArrayList<Map<String, Object>> createNodeRowMaps(int rows, int nodes) {
+        ArrayList<Map<String, Object>> rowMaps = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            long id = r % nodes;
+            Map<String, Object> row = new HashMap<>();
+            row.put("n", new Node(node(id, "name-" + id)));
+            row.put("id(n)", (long) r);
+            row.put("n.name", "name-" + id);
+            row.put("score", r * 0.5);
+            rowMaps.add(row);
+        }
+        return rowMaps;
+    }
+
+    public static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherResult;
+import de.herschke.neo4j.uplink.api.GraphEntity;
+import de.herschke.neo4j.uplink.api.Node;
+import de.herschke.neo4j.uplink.api.Relationship;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static de.herschke.neo4j.uplink.ejb.responsehandling.CypherResultFixtures.*;
+import static org.fest.assertions.Assertions.assertThat;
+import org.fest.assertions.MapAssert;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * tests the {@link DefaultCypherResult}.
+ *
+ * @author rhk
+ */
+public class DefaultCypherResultTest {
+
+    private DefaultCypherResult createResult(int rows) {
+        DefaultCypherResult result = new DefaultCypherResult();
+        result.addColumn("id");
+        result.addColumn("name");
+        result.addColumn("flag");
+        for (int i = 0; i < rows; i++) {
+            result.addRow(i, Arrays.asList((long) i, "name-" + i, i % 2 == 0));
+        }
+        return result;
+    }
+
+    @Test
+    public void testPositionalAccess() throws Exception {
+        CypherResult result = createResult(100);
+
+        assertThat(result.getRowCount()).isEqualTo(100);
+        assertThat(result.getColumnCount()).isEqualTo(3);
+        assertThat(result.getValue(42, 0)).isEqualTo(42L);
+        assertThat(result.getValue(42, "name")).isEqualTo("name-42");
+        assertThat(result.getValue(42, "unknown")).isNull();
+        assertThat(result.getRowValues(7)).containsExactly(7L, "name-7", false);
+        assertThat(result.getColumnValues("id")).hasSize(100);
+        assertThat(result.getColumnValues(2).get(10)).isEqualTo(true);
+    }
+
+    @Test
+    public void testRowViews() throws Exception {
+        CypherResult result = createResult(3);
+
+        Map<String, Object> row = result.getRowData(1);
+        assertThat(row.keySet()).containsOnly("id", "name", "flag");
+        assertThat(row).includes(MapAssert.entry("id", 1L), MapAssert.entry("name", "name-1"), MapAssert.entry("flag", false));
+        assertThat(result.getAllValues()).hasSize(3);
+        int rows = 0;
+        for (Map<String, Object> r : result) {
+            assertThat(r.get("id")).isEqualTo((long) rows++);
+        }
+        assertThat(rows).isEqualTo(3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowIndexOutOfBounds() throws Exception {
+        createResult(3).getValue(3, 0);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        CypherResult result = createResult(20);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(result);
+        }
+        CypherResult copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (CypherResult) in.readObject();
+        }
+
+        assertThat(copy.getRowCount()).isEqualTo(20);
+        assertThat(copy.getColumnNames()).containsExactly("id", "name", "flag");
+        assertThat(copy.getValue(19, "name")).isEqualTo("name-19");
+        assertThat(copy.getLongColumn("id", -1L)[19]).isEqualTo(19L);
+    }
+
+    @Test
+    public void testPrimitiveColumns() throws Exception {
+        DefaultCypherResult result = createResult(4);
+        result.addColumn("score");
+        result.addColumn("mixed");
+        result.setValueAt(0, "score", 0.5);
+        result.setValueAt(2, "score", 2.5);
+        result.setValueAt(0, "mixed", 1L);
+        result.setValueAt(1, "mixed", 1.5);
+        result.setValueAt(1, "id", null);
+
+        assertThat(result.getLongColumn("id", -1L)).isEqualTo(new long[]{0L, -1L, 2L, 3L});
+        assertThat(result.getDoubleColumn(0, Double.NaN)).isEqualTo(new double[]{0.0, Double.NaN, 2.0, 3.0});
+        assertThat(result.getDoubleColumn("score", 0.0)).isEqualTo(new double[]{0.5, 0.0, 2.5, 0.0});
+        assertThat(result.getBooleanColumn("flag", false)).isEqualTo(new boolean[]{true, false, true, false});
+        assertThat(result.getLongColumn("unknown", 7L)).isEqualTo(new long[]{7L, 7L, 7L, 7L});
+        // a column of different types keeps the type of every value
+        assertThat(result.getValue(0, "mixed")).isEqualTo(1L);
+        assertThat(result.getValue(1, "mixed")).isEqualTo(1.5);
+        assertThat(result.getValue(2, "mixed")).isNull();
+        assertThat(result.getLongColumn("mixed", 0L)).isEqualTo(new long[]{1L, 1L, 0L, 0L});
+        assertThat(result.getValue(1, "id")).isNull();
+        assertThat(result.getValue(3, "score")).isNull();
+        try {
+            result.getLongColumn("name", 0L);
+            fail("a string is not a number");
+        } catch (ClassCastException ex) {
+            assertThat(ex.getMessage()).contains("name-0");
+        }
+    }
+
+    @Test
+    public void testInterning() throws Exception {
+        DefaultCypherResult result = new DefaultCypherResult();
+        result.addColumn("r");
+        result.addColumn("kind");
+        for (int i = 0; i < 4; i++) {
+            result.addRow(i, Arrays.asList(relationship(i % 2, "KNOWS"), new String("friend")));
+        }
+        result.releaseInterner();
+
+        Relationship first = (Relationship) result.getValue(0, "r");
+        Relationship second = (Relationship) result.getValue(1, "r");
+        assertThat(result.getValue(2, "r")).isSameAs(first);
+        assertThat(result.getValue(3, "r")).isSameAs(second);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getId()).isEqualTo(1L);
+        assertThat(second.getType()).isSameAs(first.getType()).isEqualTo("KNOWS");
+        assertThat(second.getPropertyValue("since")).isEqualTo(1999L);
+        assertThat(result.getValue(3, "kind")).isSameAs(result.getValue(0, "kind"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked") // JSONArray and JSONObject are raw collections
+    public void testExternalization() throws Exception {
+        DefaultCypherResult result = new DefaultCypherResult();
+        for (String column : new String[]{"n", "r", "id", "score", "flag", "mixed", "empty"}) {
+            result.addColumn(column);
+        }
+        JSONArray list = new JSONArray();
+        list.add("a");
+        list.add(null);
+        list.add(-3L);
+        JSONObject map = new JSONObject();
+        map.put("list", list);
+        result.addRow(0, Arrays.asList(node(4, "Keanu"), relationship(7, "KNOWS"), -5L, 0.5, true, map, null));
+        result.addRow(1, Arrays.asList(node(4, "Keanu"), null, null, null, false, new BigInteger("123456789012345678901234567890"), null));
+        result.addRow(2, Arrays.asList(node(5, "Carrie-Anne"), relationship(7, "KNOWS"), 1L << 40, Double.NaN, null, "text", null));
+        result.setTruncated(true);
+
+        DefaultCypherResult copy = (DefaultCypherResult) deserialize(serialize(result));
+
+        assertThat(copy.getColumnNames()).isEqualTo(result.getColumnNames());
+        assertThat(copy.getRowCount()).isEqualTo(3);
+        assertThat(copy.isTruncated()).isTrue();
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < result.getColumnCount(); c++) {
+                Object value = result.getValue(r, c);
+                if (value instanceof GraphEntity) {
+                    assertThat(((GraphEntity) copy.getValue(r, c)).asMap()).isEqualTo(((GraphEntity) value).asMap());
+                } else {
+                    assertThat(copy.getValue(r, c)).isEqualTo(value);
+                }
+            }
+        }
+        // repeated entities are written once and shared again
+        assertThat(copy.getValue(1, "n")).isSameAs(copy.getValue(0, "n"));
+        assertThat(copy.getValue(2, "r")).isSameAs(copy.getValue(0, "r"));
+        assertThat(((Relationship) copy.getValue(0, "r")).getEndId()).isEqualTo(2L);
+        assertThat(copy.getLongColumn("id", 0L)).isEqualTo(new long[]{-5L, 0L, 1L << 40});
+        assertThat(copy.getBooleanColumn("flag", true)).isEqualTo(new boolean[]{true, false, true});
+    }
+
+    @Test
+    public void testExternalizedSize() throws Exception {
+        DefaultCypherResult result = createNodeResult(1000, 100);
+
+        int externalized = serialize(result).length;
+        assertThat(externalized).isLessThan(serialize(createNodeRowMaps(1000, 100)).length / 5);
+        assertThat(((CypherResult) deserialize(serialize(result))).getValue(999, "n.name")).isEqualTo("name-99");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked") // JSONObject is a raw HashMap
+    public void testEntityCells() throws Exception {
+        JSONObject node = new JSONObject();
+        node.put("self", "https://neo4j.example.com:7473/graph/db/data/node/4294967296");
+        node.put("data", new JSONObject());
+        JSONObject relationship = new JSONObject();
+        relationship.put("self", "https://neo4j.example.com/relationship/7");
+        relationship.put("start", "https://neo4j.example.com/node/1");
+        relationship.put("end", "https://neo4j.example.com/node/2");
+        relationship.put("data", new JSONObject());
+        JSONObject map = new JSONObject();
+        map.put("self", "http://localhost:7474/db/data/node/1/properties");
+        map.put("data", new JSONObject());
+
+        assertThat(DefaultCypherResult.toCellValue(node)).isInstanceOf(Node.class);
+        assertThat(((Node) DefaultCypherResult.toCellValue(node)).getId()).isEqualTo(4294967296L);
+        Relationship rel = (Relationship) DefaultCypherResult.toCellValue(relationship);
+        assertThat(rel.getId()).isEqualTo(7L);
+        assertThat(rel.getStartId()).isEqualTo(1L);
+        assertThat(rel.getEndId()).isEqualTo(2L);
+        assertThat(DefaultCypherResult.toCellValue(map)).isSameAs(map);
+    }
+}
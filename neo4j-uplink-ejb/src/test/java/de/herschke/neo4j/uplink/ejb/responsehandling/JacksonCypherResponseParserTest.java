@@ -0,0 +1,22 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherResult;
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+
+/**
+ * runs the tests of the {@link CypherResponseHandler} against the
+ * {@link JacksonCypherResponseParser}.
+ *
+ * @author rhk
+ */
+public class JacksonCypherResponseParserTest extends CypherResponseHandlerTest {
+
+    @Override
+    protected CypherResult parseJson(String testJson, Set<String> columns, int maxRows) throws Exception {
+        JacksonCypherResponseParser parser = new JacksonCypherResponseParser();
+        parser.setColumns(columns);
+        parser.setMaxRows(maxRows);
+        return parser.parse(new ByteArrayInputStream(testJson.getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,133 @@
+package de.herschke.neo4j.uplink.ejb.responsehandling;
+
+import de.herschke.neo4j.uplink.api.CypherCursor;
+import de.herschke.neo4j.uplink.api.Relationship;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import static org.fest.assertions.Assertions.assertThat;
+import org.fest.assertions.MapAssert;
+import org.junit.Test;
+
+/**
+ * tests the {@link StreamingCypherCursor}.
+ *
+ * @author rhk
+ */
+public class StreamingCypherCursorTest {
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed = false;
+
+        public TrackingInputStream(String json) throws IOException {
+            super(json.getBytes("UTF-8"));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    @Test
+    public void testEmptyResponse() throws Exception {
+        TrackingInputStream stream = new TrackingInputStream("{\n"
+                + "  \"columns\" : [ \"n\" ],\n"
+                + "  \"data\" : [ ]\n"
+                + "}\n");
+        CypherCursor cursor = new StreamingCypherCursor(stream);
+
+        assertThat(cursor.getColumnNames()).containsExactly("n");
+        assertThat(cursor.next()).isFalse();
+        assertThat(stream.closed).isTrue();
+    }
+
+    @Test
+    public void testRowsAreReadLazily() throws Exception {
+        TrackingInputStream stream = new TrackingInputStream("{\n"
+                + "    \"columns\": [\"test1\", \"test2\"],\n"
+                + "    \"data\": [[ [9,8,7], 1 ], [\"abc\", 2], [\"def\", 3]]\n"
+                + "}\n");
+        CypherCursor cursor = new StreamingCypherCursor(stream);
+
+        assertThat(cursor.getRowIndex()).isEqualTo(-1);
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getRowIndex()).isEqualTo(0);
+        assertThat(cursor.getColumnNames()).containsExactly("test1", "test2");
+        assertThat((List) cursor.getValue("test1")).containsExactly(9L, 8L, 7L);
+        assertThat(cursor.getValue(1)).isEqualTo(1L);
+
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getRowData()).includes(MapAssert.entry("test1", "abc"), MapAssert.entry("test2", 2L));
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getRowValues()).containsExactly("def", 3L);
+        assertThat(stream.closed).isFalse();
+
+        assertThat(cursor.next()).isFalse();
+        assertThat(stream.closed).isTrue();
+    }
+
+    @Test
+    public void testLargeResponseIsNotReadAhead() throws Exception {
+        StringBuilder json = new StringBuilder("{ \"columns\": [\"id\", \"name\"], \"data\": [");
+        for (int i = 0; i < 10000; i++) {
+            json.append(i == 0 ? "" : ", ").append("[").append(i).append(", \"name-").append(i).append("\"]");
+        }
+        json.append("] }");
+        TrackingInputStream stream = new TrackingInputStream(json.toString());
+        CypherCursor cursor = new StreamingCypherCursor(stream);
+
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getValue("name")).isEqualTo("name-0");
+        // the remaining rows are not read yet
+        assertThat(stream.available()).isGreaterThan(0);
+        int rows = 1;
+        while (cursor.next()) {
+            assertThat(cursor.getValue("id")).isEqualTo((long) rows++);
+        }
+        assertThat(rows).isEqualTo(10000);
+        assertThat(stream.closed).isTrue();
+    }
+
+    @Test
+    public void testCloseReleasesStream() throws Exception {
+        TrackingInputStream stream = new TrackingInputStream("{\n"
+                + "    \"columns\": [\"test\"],\n"
+                + "    \"data\": [[1], [2], [3]]\n"
+                + "}\n");
+        CypherCursor cursor = new StreamingCypherCursor(stream);
+
+        assertThat(cursor.next()).isTrue();
+        cursor.close();
+        assertThat(stream.closed).isTrue();
+        assertThat(cursor.next()).isFalse();
+    }
+
+    @Test
+    public void testGraphEntities() throws Exception {
+        InputStream stream = new TrackingInputStream("{\n"
+                + "  \"columns\" : [ \"r\" ],\n"
+                + "  \"data\" : [ [ {\n"
+                + "    \"start\" : \"http://localhost:7474/db/data/node/3\",\n"
+                + "    \"data\" : {\n"
+                + "      \"role\" : \"Neo\"\n"
+                + "    },\n"
+                + "    \"self\" : \"http://localhost:7474/db/data/relationship/0\",\n"
+                + "    \"type\" : \"ACTS_IN\",\n"
+                + "    \"end\" : \"http://localhost:7474/db/data/node/6\"\n"
+                + "  } ] ]\n"
+                + "}\n");
+        CypherCursor cursor = new StreamingCypherCursor(stream);
+
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.getValue("r")).isInstanceOf(Relationship.class);
+        Relationship rel = (Relationship) cursor.getValue("r");
+        assertThat(rel.getType()).isEqualTo("ACTS_IN");
+        assertThat(rel.getStartId()).isEqualTo(3L);
+        assertThat(rel.getEndId()).isEqualTo(6L);
+        assertThat(cursor.next()).isFalse();
+    }
+}
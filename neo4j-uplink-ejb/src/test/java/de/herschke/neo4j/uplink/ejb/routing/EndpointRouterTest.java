@@ -0,0 +1,130 @@
+package de.herschke.neo4j.uplink.ejb.routing;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link EndpointRouter} and the health checks of the
+ * {@link Endpoint}s against a local http server.
+ *
+ * @author rhk
+ */
+public class EndpointRouterTest {
+
+    private HttpServer server;
+    private Client client;
+    private Endpoint master;
+    private Endpoint replica1;
+    private Endpoint replica2;
+    private EndpointRouter router;
+    private ExecutorService executor;
+    private volatile boolean replicasAvailable = true;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/db/data", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.createContext("/db/manage/server/ha/available", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(replicasAvailable ? 200 : 404, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        client = Client.create();
+        executor = Executors.newFixedThreadPool(3);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/db/data/";
+        master = new Endpoint(url, client, 1000, 3);
+        replica1 = new Endpoint(url, client, 1000, 3, true);
+        replica2 = new Endpoint(url, client, 1000, 3, true);
+        router = new EndpointRouter(master, Arrays.asList(replica1, replica2), executor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        client.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSelection() throws Exception {
+        assertThat(router.select(false)).isSameAs(master);
+        replica1.acquire();
+        assertThat(router.select(true)).isSameAs(replica2);
+        replica2.acquire();
+        replica2.acquire();
+        assertThat(router.select(true)).isSameAs(replica1);
+        replica2.release();
+        replica2.release();
+        // the same count of requests in flight, but replica2 responds slower
+        replica1.responded(1000000);
+        replica2.responded(5000000);
+        replica1.release();
+        assertThat(router.select(true)).isSameAs(replica1);
+        assertThat(new EndpointRouter(master, Arrays.<Endpoint>asList()).select(true)).isSameAs(master);
+    }
+
+    @Test
+    public void testEjectionAndRestore() throws Exception {
+        replica1.failed();
+        replica1.failed();
+        assertThat(replica1.isAvailable()).isTrue();
+        replica1.failed();
+        assertThat(replica1.isAvailable()).isFalse();
+        for (int i = 0; i < 4; i++) {
+            assertThat(router.select(true)).isSameAs(replica2);
+        }
+        replica2.failed();
+        replica2.failed();
+        replica2.failed();
+        assertThat(router.select(true)).isSameAs(master);
+        assertThat(router.getEjectionCount()).isEqualTo(2);
+
+        router.checkHealth();
+        assertThat(router.getAvailableEndpoints().values()).containsOnly(true);
+
+        server.stop(0);
+        router.checkHealth();
+        assertThat(router.getAvailableEndpoints().values()).containsOnly(false);
+        assertThat(router.select(true)).isSameAs(master);
+
+        // a response restores the master without a health check
+        master.responded(1000000);
+        assertThat(master.isAvailable()).isTrue();
+        assertThat(replica1.isAvailable()).isFalse();
+    }
+
+    @Test
+    public void testReplicaNotAvailableInCluster() throws Exception {
+        // the service root still responds, but the HA status does not
+        replicasAvailable = false;
+        router.checkHealth();
+        assertThat(master.isAvailable()).isTrue();
+        assertThat(replica1.isAvailable()).isFalse();
+        assertThat(replica2.isAvailable()).isFalse();
+        assertThat(router.select(true)).isSameAs(master);
+
+        replicasAvailable = true;
+        router.checkHealth();
+        assertThat(router.getAvailableEndpoints().values()).containsOnly(true);
+    }
+}
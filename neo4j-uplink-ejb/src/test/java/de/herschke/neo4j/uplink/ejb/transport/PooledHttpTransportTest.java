@@ -0,0 +1,102 @@
+package de.herschke.neo4j.uplink.ejb.transport;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import javax.ws.rs.core.MediaType;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link PooledHttpTransport} against a local http server, that
+ * echoes the request body.
+ *
+ * @author rhk
+ */
+public class PooledHttpTransportTest {
+
+    private HttpServer server;
+    private PooledHttpTransport transport;
+    private Client client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (InputStream in = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[1024];
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                        body.write(buffer, 0, read);
+                    }
+                }
+                exchange.getResponseHeaders().add("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+                exchange.sendResponseHeaders(200, body.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            }
+        });
+        server.start();
+        transport = new PooledHttpTransport();
+        TransportSettings settings = new TransportSettings();
+        settings.setMaxConnections(4);
+        settings.setMaxConnectionsPerRoute(2);
+        client = transport.createClient(settings);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.destroy();
+        transport.shutdown();
+        server.stop(0);
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/echo";
+    }
+
+    @Test
+    public void testRequestsReuseConnections() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            ClientResponse response = client.resource(url()).accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON).post(ClientResponse.class, "{\"request\": " + i + "}");
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(response.getEntity(String.class)).isEqualTo("{\"request\": " + i + "}");
+        }
+        ConnectionPoolStatisticsMXBean statistics = transport.getPoolStatistics();
+        assertThat(statistics.getRequestCount()).isEqualTo(10);
+        assertThat(statistics.getLeasedConnections()).isEqualTo(0);
+        assertThat(statistics.getAvailableConnections()).isEqualTo(1);
+        assertThat(statistics.getMaxConnections()).isEqualTo(4);
+        assertThat(statistics.getMaxConnectionsPerRoute()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAbortDoesNotReuseConnection() throws Exception {
+        ClientResponse response = client.resource(url()).type(MediaType.APPLICATION_JSON).post(ClientResponse.class, "{\"request\": 1}");
+        assertThat(transport.getPoolStatistics().getLeasedConnections()).isEqualTo(1);
+        transport.abort(response);
+        assertThat(transport.getPoolStatistics().getLeasedConnections()).isEqualTo(0);
+        assertThat(transport.getPoolStatistics().getAvailableConnections()).isEqualTo(0);
+        assertThat(transport.getPoolStatistics().getAbortedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEvictIdleConnections() throws Exception {
+        client.resource(url()).type(MediaType.APPLICATION_JSON).post(String.class, "{}");
+        assertThat(transport.getPoolStatistics().getAvailableConnections()).isEqualTo(1);
+        transport.evictIdleConnections();
+        assertThat(transport.getPoolStatistics().getAvailableConnections()).isEqualTo(1);
+    }
+}